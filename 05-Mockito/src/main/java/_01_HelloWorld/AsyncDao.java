@@ -0,0 +1,17 @@
+package _01_HelloWorld;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link IDao}. Failures complete the futures exceptionally, with the same
+ * exceptions IDao throws.
+ */
+public interface AsyncDao {
+	CompletableFuture<String> greet();
+	CompletableFuture<Integer> getPrice(String tutorial);
+	/**
+	 * @return future failing with {@link InvalidQuestionException} for a question the DAO does not know
+	 */
+	CompletableFuture<String> question(String question);
+	CompletableFuture<Void> bye();
+}
@@ -0,0 +1,349 @@
+package _01_HelloWorld;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link IDao} decorator that remembers prices and the answers to selected questions for a time to live.
+ * <p>
+ * Each cache is bounded and drops its least recently used entries first. A miss starts one load from the
+ * delegate and every concurrent request for the same key waits for that load instead of starting its own, so
+ * an expired popular key costs one backend call. Failed loads are not cached. {@link #greet()} and
+ * {@link #bye()} always go to the delegate.
+ * <p>
+ * {@link #questionAll(List)} and {@link #getPrices(Collection)} answer hits from the caches and send the
+ * misses to the delegate's batch method in one call. If that call fails, every key it was loading fails with
+ * it.
+ */
+public class CachingDao implements IDao {
+
+	private static final long DEFAULT_TTL_NANOS = TimeUnit.MINUTES.toNanos(1);
+	private static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+	private interface Loader<K, V> {
+		V load(K key) throws InvalidQuestionException;
+	}
+
+	private final IDao delegate;
+	private final Cache<String, Integer> prices;
+	private final Cache<String, String> answers;
+	private volatile Set<String> cachedQuestions = new HashSet<String>(Arrays.asList(WHAT_IS_TODAYS_TOPIC));
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder loadFailures = new LongAdder();
+	private final LongAdder loadCalls = new LongAdder();
+	private final LongAdder loadNanos = new LongAdder();
+
+	public CachingDao(IDao delegate) {
+		this.delegate = delegate;
+		this.prices = new Cache<String, Integer>(new Loader<String, Integer>() {
+			@Override
+			public Integer load(String tutorial) {
+				return CachingDao.this.delegate.getPrice(tutorial);
+			}
+		});
+		this.answers = new Cache<String, String>(new Loader<String, String>() {
+			@Override
+			public String load(String question) throws InvalidQuestionException {
+				return CachingDao.this.delegate.question(question);
+			}
+		});
+	}
+
+	public void setPriceTtl(long ttl, TimeUnit unit) {
+		prices.ttlNanos = unit.toNanos(ttl);
+	}
+
+	public void setQuestionTtl(long ttl, TimeUnit unit) {
+		answers.ttlNanos = unit.toNanos(ttl);
+	}
+
+	/**
+	 * Bound of each of the two caches.
+	 */
+	public void setMaximumSize(int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+		}
+		prices.maximumSize = maximumSize;
+		answers.maximumSize = maximumSize;
+	}
+
+	/**
+	 * Questions whose answers are cached, {@link IDao#WHAT_IS_TODAYS_TOPIC} by default. Other questions always
+	 * go to the delegate.
+	 */
+	public void setCachedQuestions(Collection<String> questions) {
+		this.cachedQuestions = new HashSet<String>(questions);
+	}
+
+	@Override
+	public String greet() {
+		return delegate.greet();
+	}
+
+	@Override
+	public int getPrice(String tutorial) {
+		try {
+			return prices.get(tutorial);
+		} catch (InvalidQuestionException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public String question(String question) throws InvalidQuestionException {
+		if (!cachedQuestions.contains(question)) {
+			return delegate.question(question);
+		}
+		return answers.get(question);
+	}
+
+	/**
+	 * Uncached questions and cache misses go to the delegate's {@link IDao#questionAll(List)} together.
+	 */
+	@Override
+	public List<String> questionAll(List<String> questions) throws InvalidQuestionException {
+		Set<String> cached = cachedQuestions;
+		List<String> asked = new ArrayList<String>();
+		List<String> cacheable = new ArrayList<String>();
+		for (String question : questions) {
+			if (cached.contains(question)) {
+				cacheable.add(question);
+			} else {
+				asked.add(question);
+			}
+		}
+		Map<String, Slot<String>> loads = new LinkedHashMap<String, Slot<String>>();
+		Map<String, Slot<String>> slots = answers.slots(cacheable, loads);
+		int uncached = asked.size();
+		asked.addAll(loads.keySet());
+		List<String> delegated = null;
+		if (!asked.isEmpty()) {
+			long start = System.nanoTime();
+			try {
+				delegated = delegate.questionAll(asked);
+			} catch (Throwable e) {
+				answers.failed(loads, e, start);
+				throw e;
+			}
+			Map<String, String> loaded = new LinkedHashMap<String, String>();
+			for (int i = uncached; i < asked.size(); i++) {
+				loaded.put(asked.get(i), delegated.get(i));
+			}
+			answers.loaded(loads, loaded, start);
+		}
+		List<String> result = new ArrayList<String>(questions.size());
+		int next = 0;
+		for (String question : questions) {
+			if (cached.contains(question)) {
+				result.add(answers.join(slots.get(question)));
+			} else {
+				result.add(delegated.get(next++));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Misses go to the delegate's {@link IDao#getPrices(Collection)} in one call.
+	 *
+	 * @throws IllegalStateException if the delegate leaves out one of the missed tutorials
+	 */
+	@Override
+	public Map<String, Integer> getPrices(Collection<String> tutorials) {
+		Map<String, Slot<Integer>> loads = new LinkedHashMap<String, Slot<Integer>>();
+		Map<String, Slot<Integer>> slots = prices.slots(tutorials, loads);
+		if (!loads.isEmpty()) {
+			long start = System.nanoTime();
+			Map<String, Integer> loaded;
+			try {
+				loaded = delegate.getPrices(new ArrayList<String>(loads.keySet()));
+			} catch (Throwable e) {
+				prices.failed(loads, e, start);
+				throw e;
+			}
+			prices.loaded(loads, loaded, start);
+		}
+		Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+		try {
+			for (Map.Entry<String, Slot<Integer>> slot : slots.entrySet()) {
+				result.put(slot.getKey(), prices.join(slot.getValue()));
+			}
+		} catch (InvalidQuestionException e) {
+			throw new IllegalStateException(e);
+		}
+		return result;
+	}
+
+	@Override
+	public void bye() {
+		delegate.bye();
+	}
+
+	public long hitCount() {
+		return hits.sum();
+	}
+
+	public long missCount() {
+		return misses.sum();
+	}
+
+	public long loadFailureCount() {
+		return loadFailures.sum();
+	}
+
+	/**
+	 * @return mean time of the delegate calls made on misses, in nanoseconds, or 0 before the first; a batch
+	 *         counts as one call
+	 */
+	public double averageLoadNanos() {
+		long loads = loadCalls.sum();
+		return loads == 0 ? 0 : (double) loadNanos.sum() / loads;
+	}
+
+	private static final class Slot<V> {
+		final CompletableFuture<V> value = new CompletableFuture<V>();
+		volatile long loadedAt;
+	}
+
+	private final class Cache<K, V> {
+		private final Loader<K, V> loader;
+		private final LinkedHashMap<K, Slot<V>> entries = new LinkedHashMap<K, Slot<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Slot<V>> eldest) {
+				return size() > maximumSize;
+			}
+		};
+		volatile long ttlNanos = DEFAULT_TTL_NANOS;
+		volatile int maximumSize = DEFAULT_MAXIMUM_SIZE;
+
+		Cache(Loader<K, V> loader) {
+			this.loader = loader;
+		}
+
+		V get(K key) throws InvalidQuestionException {
+			Map<K, Slot<V>> loads = new LinkedHashMap<K, Slot<V>>(2);
+			Slot<V> slot;
+			synchronized (entries) {
+				slot = slot(key, loads);
+			}
+			if (loads.isEmpty()) {
+				hits.increment();
+			} else {
+				misses.increment();
+				load(key, slot);
+			}
+			return join(slot);
+		}
+
+		/**
+		 * Slots of the distinct keys, in iteration order. The caller must load the slots put into loads and pass
+		 * them to {@link #loaded} or {@link #failed}.
+		 */
+		Map<K, Slot<V>> slots(Collection<K> keys, Map<K, Slot<V>> loads) {
+			Map<K, Slot<V>> slots = new LinkedHashMap<K, Slot<V>>();
+			synchronized (entries) {
+				for (K key : keys) {
+					if (!slots.containsKey(key)) {
+						slots.put(key, slot(key, loads));
+					}
+				}
+			}
+			hits.add(slots.size() - loads.size());
+			misses.add(loads.size());
+			return slots;
+		}
+
+		// the live slot of the key, or a new one that is also put into loads; called with entries locked
+		private Slot<V> slot(K key, Map<K, Slot<V>> loads) {
+			Slot<V> slot = entries.get(key);
+			if (slot == null || slot.value.isDone() && System.nanoTime() - slot.loadedAt >= ttlNanos) {
+				slot = new Slot<V>();
+				entries.put(key, slot);
+				loads.put(key, slot);
+			}
+			return slot;
+		}
+
+		V join(Slot<V> slot) throws InvalidQuestionException {
+			try {
+				return slot.value.join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof InvalidQuestionException) {
+					throw (InvalidQuestionException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw e;
+			}
+		}
+
+		private void load(K key, Slot<V> slot) {
+			long start = System.nanoTime();
+			V value;
+			try {
+				value = loader.load(key);
+			} catch (Throwable e) {
+				// whatever the loader throws, the waiters must be released and the key loadable again
+				failed(Collections.singletonMap(key, slot), e, start);
+				if (e instanceof Error) {
+					throw (Error) e;
+				}
+				return;
+			}
+			loaded(Collections.singletonMap(key, slot), Collections.singletonMap(key, value), start);
+		}
+
+		void loaded(Map<K, Slot<V>> loads, Map<K, V> values, long start) {
+			long now = System.nanoTime();
+			loadCalls.increment();
+			loadNanos.add(now - start);
+			for (Map.Entry<K, Slot<V>> load : loads.entrySet()) {
+				K key = load.getKey();
+				Slot<V> slot = load.getValue();
+				if (values.containsKey(key)) {
+					slot.loadedAt = now;
+					slot.value.complete(values.get(key));
+				} else {
+					fail(key, slot, new IllegalStateException("delegate returned nothing for " + key));
+				}
+			}
+		}
+
+		void failed(Map<K, Slot<V>> loads, Throwable e, long start) {
+			loadCalls.increment();
+			loadNanos.add(System.nanoTime() - start);
+			for (Map.Entry<K, Slot<V>> load : loads.entrySet()) {
+				fail(load.getKey(), load.getValue(), e);
+			}
+		}
+
+		private void fail(K key, Slot<V> slot, Throwable e) {
+			loadFailures.increment();
+			synchronized (entries) {
+				entries.remove(key, slot);
+			}
+			slot.value.completeExceptionally(e);
+		}
+	}
+}
@@ -0,0 +1,293 @@
+package _01_HelloWorld;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link IDao} decorator that stops calling a DAO which keeps failing.
+ * <p>
+ * While closed, the outcomes of the last {@link #setWindowSize(int) window} calls are kept; once at least
+ * {@link #setMinimumCalls(int) minimum calls} are recorded and the share of failures reaches the
+ * {@link #setFailureRateThreshold(int) threshold}, the breaker opens. An open breaker answers {@link #greet()}
+ * with null, which callers already treat as an unavailable DAO, and fails every other call with a
+ * {@link CircuitBreakerOpenException}, all without touching the DAO. After the open duration a few trial calls
+ * are let through: if they all succeed the breaker closes, otherwise it opens again for twice as long, up to
+ * a maximum. Open durations are jittered so that many clients do not come back at the same moment.
+ * <p>
+ * A greet that does not answer {@link IDao#HELLO_WORLD} and any RuntimeException count as failures. An
+ * {@link InvalidQuestionException} means the DAO answered and counts as a success. {@link #questionAll(List)}
+ * and {@link #getPrices(Collection)} reach the delegate's batch methods as one call each and count as one.
+ */
+public class CircuitBreakerDao implements IDao {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private static final CircuitBreakerOpenException OPEN = new CircuitBreakerOpenException();
+
+	private final IDao delegate;
+	private int windowSize = 20;
+	private int minimumCalls = 10;
+	private int failureRateThreshold = 50;
+	private int halfOpenCalls = 3;
+	private long openNanos = TimeUnit.SECONDS.toNanos(1);
+	private long maxOpenNanos = TimeUnit.SECONDS.toNanos(30);
+
+	private volatile State state = State.CLOSED;
+	private volatile long openUntil;
+	// guarded by this
+	private boolean[] failed = new boolean[windowSize];
+	private int next;
+	private int recorded;
+	private int failures;
+	private int halfOpenPermits;
+	private int halfOpenSuccesses;
+	private int openings;
+
+	private final LongAdder rejected = new LongAdder();
+
+	public CircuitBreakerDao(IDao delegate) {
+		this.delegate = delegate;
+	}
+
+	public synchronized void setWindowSize(int windowSize) {
+		if (windowSize < 1) {
+			throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+		}
+		this.windowSize = windowSize;
+		this.failed = new boolean[windowSize];
+		resetWindow();
+	}
+
+	public synchronized void setMinimumCalls(int minimumCalls) {
+		this.minimumCalls = minimumCalls;
+	}
+
+	/**
+	 * @param failureRateThreshold percentage of failed calls in the window that opens the breaker
+	 */
+	public synchronized void setFailureRateThreshold(int failureRateThreshold) {
+		if (failureRateThreshold < 1 || failureRateThreshold > 100) {
+			throw new IllegalArgumentException("failureRateThreshold must be a percentage: " + failureRateThreshold);
+		}
+		this.failureRateThreshold = failureRateThreshold;
+	}
+
+	/**
+	 * @param halfOpenCalls trial calls that have to succeed before the breaker closes again
+	 */
+	public synchronized void setHalfOpenCalls(int halfOpenCalls) {
+		if (halfOpenCalls < 1) {
+			throw new IllegalArgumentException("halfOpenCalls must be positive: " + halfOpenCalls);
+		}
+		this.halfOpenCalls = halfOpenCalls;
+	}
+
+	/**
+	 * First open duration and its upper bound; each failed trial doubles it.
+	 */
+	public synchronized void setOpenDuration(long duration, long maxDuration, TimeUnit unit) {
+		if (duration <= 0 || maxDuration < duration) {
+			throw new IllegalArgumentException("invalid open duration " + duration + " to " + maxDuration);
+		}
+		this.openNanos = unit.toNanos(duration);
+		this.maxOpenNanos = unit.toNanos(maxDuration);
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return calls turned away without reaching the DAO
+	 */
+	public long rejectedCount() {
+		return rejected.sum();
+	}
+
+	/**
+	 * @return null while the breaker is open
+	 */
+	@Override
+	public String greet() {
+		if (!acquire()) {
+			return null;
+		}
+		String response;
+		try {
+			response = delegate.greet();
+		} catch (RuntimeException e) {
+			record(false);
+			throw e;
+		}
+		record(HELLO_WORLD.equals(response));
+		return response;
+	}
+
+	@Override
+	public int getPrice(String tutorial) {
+		if (!acquire()) {
+			throw OPEN;
+		}
+		try {
+			int price = delegate.getPrice(tutorial);
+			record(true);
+			return price;
+		} catch (RuntimeException e) {
+			record(false);
+			throw e;
+		}
+	}
+
+	@Override
+	public String question(String question) throws InvalidQuestionException {
+		if (!acquire()) {
+			throw OPEN;
+		}
+		try {
+			String answer = delegate.question(question);
+			record(true);
+			return answer;
+		} catch (InvalidQuestionException e) {
+			record(true);
+			throw e;
+		} catch (RuntimeException e) {
+			record(false);
+			throw e;
+		}
+	}
+
+	@Override
+	public List<String> questionAll(List<String> questions) throws InvalidQuestionException {
+		if (!acquire()) {
+			throw OPEN;
+		}
+		try {
+			List<String> answers = delegate.questionAll(questions);
+			record(true);
+			return answers;
+		} catch (InvalidQuestionException e) {
+			record(true);
+			throw e;
+		} catch (RuntimeException e) {
+			record(false);
+			throw e;
+		}
+	}
+
+	@Override
+	public Map<String, Integer> getPrices(Collection<String> tutorials) {
+		if (!acquire()) {
+			throw OPEN;
+		}
+		try {
+			Map<String, Integer> prices = delegate.getPrices(tutorials);
+			record(true);
+			return prices;
+		} catch (RuntimeException e) {
+			record(false);
+			throw e;
+		}
+	}
+
+	@Override
+	public void bye() {
+		if (!acquire()) {
+			throw OPEN;
+		}
+		try {
+			delegate.bye();
+			record(true);
+		} catch (RuntimeException e) {
+			record(false);
+			throw e;
+		}
+	}
+
+	private boolean acquire() {
+		State current = state;
+		if (current == State.CLOSED) {
+			return true;
+		}
+		// the common case during an outage, decided without taking the lock
+		if (current == State.OPEN && System.nanoTime() - openUntil < 0) {
+			rejected.increment();
+			return false;
+		}
+		synchronized (this) {
+			if (state == State.OPEN && System.nanoTime() - openUntil >= 0) {
+				state = State.HALF_OPEN;
+				halfOpenPermits = halfOpenCalls;
+				halfOpenSuccesses = 0;
+			}
+			if (state == State.CLOSED) {
+				return true;
+			}
+			if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+				halfOpenPermits--;
+				return true;
+			}
+		}
+		rejected.increment();
+		return false;
+	}
+
+	private synchronized void record(boolean success) {
+		switch (state) {
+		case CLOSED:
+			if (recorded == windowSize) {
+				if (failed[next]) {
+					failures--;
+				}
+			} else {
+				recorded++;
+			}
+			failed[next] = !success;
+			if (!success) {
+				failures++;
+			}
+			next = (next + 1) % windowSize;
+			if (recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+				open();
+			}
+			break;
+		case HALF_OPEN:
+			if (!success) {
+				open();
+			} else if (++halfOpenSuccesses == halfOpenCalls) {
+				openings = 0;
+				resetWindow();
+				state = State.CLOSED;
+			}
+			break;
+		default:
+			// a call started before the breaker opened, its outcome no longer matters
+			break;
+		}
+	}
+
+	private void open() {
+		long duration = openNanos << Math.min(openings, 30);
+		if (duration <= 0 || duration > maxOpenNanos) {
+			duration = maxOpenNanos;
+		}
+		openings++;
+		// somewhere between half and all of the duration
+		duration -= ThreadLocalRandom.current().nextLong(duration / 2 + 1);
+		openUntil = System.nanoTime() + duration;
+		state = State.OPEN;
+	}
+
+	private void resetWindow() {
+		Arrays.fill(failed, false);
+		next = 0;
+		recorded = 0;
+		failures = 0;
+	}
+}
@@ -0,0 +1,18 @@
+package _01_HelloWorld;
+
+/**
+ * Thrown instead of calling the DAO while a {@link CircuitBreakerDao} is open. It carries no stack trace, so
+ * rejecting a call costs next to nothing.
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = -2311417349807260462L;
+
+	public CircuitBreakerOpenException() {
+		super("circuit breaker open", null, false, false);
+	}
+
+}
@@ -0,0 +1,163 @@
+package _01_HelloWorld;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import common.StacklessExceptions;
+
+/**
+ * Remembers the outcome of {@link IDao#greet()} for a time to live, so requests do not each pay a round trip
+ * to find out whether the DAO is up.
+ * <p>
+ * A background thread greets again every half TTL, so requests normally find a fresh result. While the
+ * last greet failed, {@link #verify()} throws right away instead of trying again. Only when no result is
+ * younger than the TTL, for example because the background thread is stuck, does a request greet itself.
+ */
+public class ConnectionHealthCheck implements Closeable {
+
+	private static final class Status {
+		final boolean available;
+		final long checkedAt;
+
+		Status(boolean available, long checkedAt) {
+			this.available = available;
+			this.checkedAt = checkedAt;
+		}
+	}
+
+	private final IDao dao;
+	private final long ttlNanos;
+	private final ScheduledExecutorService scheduler;
+	private volatile Status status;
+	private CompletableFuture<Status> pendingGreet;
+
+	public ConnectionHealthCheck(IDao dao, long ttl, TimeUnit unit) {
+		if (ttl <= 0) {
+			throw new IllegalArgumentException("ttl must be positive: " + ttl);
+		}
+		this.dao = dao;
+		this.ttlNanos = unit.toNanos(ttl);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "ConnectionHealthCheck");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		long period = Math.max(1, ttlNanos / 2);
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				refresh();
+			}
+		}, period, period, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @throws DAONotAvailableException if the latest greet within the TTL did not answer {@link IDao#HELLO_WORLD}
+	 */
+	public void verify() throws DAONotAvailableException {
+		Status current = status;
+		if (current == null || System.nanoTime() - current.checkedAt >= ttlNanos) {
+			current = refreshIfExpired();
+		}
+		if (!current.available) {
+			throw StacklessExceptions.newInstance(DAONotAvailableException.class);
+		}
+	}
+
+	/**
+	 * Same as {@link #verify()} without blocking: when no result is younger than the TTL, greets through
+	 * {@code asyncDao} instead of on the caller's thread.
+	 *
+	 * @return future failing with {@link DAONotAvailableException} where verify() would throw it
+	 */
+	public CompletableFuture<Void> verifyAsync(AsyncDao asyncDao) {
+		Status current = status;
+		CompletableFuture<Status> checked;
+		if (current == null || System.nanoTime() - current.checkedAt >= ttlNanos) {
+			checked = refreshAsyncIfExpired(asyncDao);
+		} else {
+			checked = CompletableFuture.completedFuture(current);
+		}
+		return checked.thenCompose(result -> {
+			CompletableFuture<Void> verified = new CompletableFuture<Void>();
+			if (result.available) {
+				verified.complete(null);
+			} else {
+				verified.completeExceptionally(StacklessExceptions.newInstance(DAONotAvailableException.class));
+			}
+			return verified;
+		});
+	}
+
+	/**
+	 * @return the cached result, without greeting
+	 */
+	public boolean isAvailable() {
+		Status current = status;
+		return current != null && current.available;
+	}
+
+	/**
+	 * Greets now and caches the result.
+	 */
+	public synchronized boolean refresh() {
+		boolean available;
+		try {
+			available = IDao.HELLO_WORLD.equals(dao.greet());
+		} catch (RuntimeException e) {
+			available = false;
+		}
+		status = new Status(available, System.nanoTime());
+		return available;
+	}
+
+	// requests that find the result expired at the same time greet only once
+	private synchronized Status refreshIfExpired() {
+		Status current = status;
+		if (current == null || System.nanoTime() - current.checkedAt >= ttlNanos) {
+			refresh();
+		}
+		return status;
+	}
+
+	// like refreshIfExpired, concurrent requests share one greet
+	private synchronized CompletableFuture<Status> refreshAsyncIfExpired(AsyncDao asyncDao) {
+		Status current = status;
+		if (current != null && System.nanoTime() - current.checkedAt < ttlNanos) {
+			return CompletableFuture.completedFuture(current);
+		}
+		if (pendingGreet != null) {
+			return pendingGreet;
+		}
+		final CompletableFuture<Status> greet = asyncDao.greet().handle((response, failure) -> {
+			Status result = new Status(failure == null && IDao.HELLO_WORLD.equals(response), System.nanoTime());
+			status = result;
+			return result;
+		});
+		pendingGreet = greet;
+		// runs right here when the greet has already finished
+		greet.whenComplete((result, failure) -> greetDone(greet));
+		return greet;
+	}
+
+	private synchronized void greetDone(CompletableFuture<Status> greet) {
+		if (pendingGreet == greet) {
+			pendingGreet = null;
+		}
+	}
+
+	/**
+	 * Stops the background refresh.
+	 */
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+	}
+}
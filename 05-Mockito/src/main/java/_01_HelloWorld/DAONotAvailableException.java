@@ -1,6 +1,8 @@
 package _01_HelloWorld;
 
-public class DAONotAvailableException extends Exception {
+import common.BusinessException;
+
+public class DAONotAvailableException extends BusinessException {
 
 	/**
 	 * 
@@ -0,0 +1,129 @@
+package _01_HelloWorld;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import common.LatencyHistogram;
+
+/**
+ * Measures {@link ServiceImpl#question(String)} against a {@link StandInDaoServer} at increasing concurrency
+ * and prints throughput and latency percentiles for each level.
+ * <p>
+ * Usage: {@code DaoLoadGenerator [latencyMillis] [errorPercent] [connections] [secondsPerLevel] [maxConcurrency]}.
+ * The server runs in the same process on loopback, and each caller thread asks
+ * {@link IDao#ANY_NEW_TOPICS} in a loop, which takes five DAO round trips.
+ */
+public class DaoLoadGenerator {
+
+	public static final class Result {
+		private final int concurrency;
+		private final long calls;
+		private final long failures;
+		private final long nanos;
+		private final LatencyHistogram latencies;
+
+		Result(int concurrency, long calls, long failures, long nanos, LatencyHistogram latencies) {
+			this.concurrency = concurrency;
+			this.calls = calls;
+			this.failures = failures;
+			this.nanos = nanos;
+			this.latencies = latencies;
+		}
+
+		public long getCalls() {
+			return calls;
+		}
+
+		public long getFailures() {
+			return failures;
+		}
+
+		public double getCallsPerSecond() {
+			return calls * 1e9 / nanos;
+		}
+
+		/**
+		 * @return latency in nanoseconds below which the given share of calls completed, 0 without calls
+		 */
+		public long getLatencyPercentile(double percentile) {
+			return latencies.getPercentile(percentile);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%4d threads: %8.0f calls/s, %d failed, p50 %6d us, p99 %6d us, p99.9 %6d us", concurrency,
+					getCallsPerSecond(), failures, micros(getLatencyPercentile(50)), micros(getLatencyPercentile(99)),
+					micros(getLatencyPercentile(99.9)));
+		}
+
+		private static long micros(long nanos) {
+			return TimeUnit.NANOSECONDS.toMicros(nanos);
+		}
+	}
+
+	/**
+	 * Runs concurrency threads asking questions through service for the given time. Failed calls are counted,
+	 * and their latency recorded like any other.
+	 */
+	public static Result run(final ServiceImpl service, int concurrency, long durationMillis) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+		final LatencyHistogram[] latencies = new LatencyHistogram[concurrency];
+		final long[] failures = new long[concurrency];
+		Thread[] callers = new Thread[concurrency];
+		long start = System.nanoTime();
+		for (int c = 0; c < concurrency; c++) {
+			final int caller = c;
+			callers[c] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					LatencyHistogram recorded = new LatencyHistogram();
+					while (System.nanoTime() < deadline) {
+						long begin = System.nanoTime();
+						try {
+							service.question(IDao.ANY_NEW_TOPICS);
+						} catch (InvalidQuestionException | DAONotAvailableException | RuntimeException e) {
+							failures[caller]++;
+						}
+						recorded.record(System.nanoTime() - begin);
+					}
+					latencies[caller] = recorded;
+				}
+			}, "DaoLoadGenerator-" + c);
+			callers[c].start();
+		}
+		for (Thread caller : callers) {
+			caller.join();
+		}
+		long nanos = System.nanoTime() - start;
+
+		long failed = 0;
+		LatencyHistogram merged = new LatencyHistogram();
+		for (int c = 0; c < concurrency; c++) {
+			merged.add(latencies[c]);
+			failed += failures[c];
+		}
+		return new Result(concurrency, merged.getCount(), failed, nanos, merged);
+	}
+
+	public static void main(String[] args) throws Exception {
+		long latencyMillis = args.length > 0 ? Long.parseLong(args[0]) : 1;
+		double errorRate = args.length > 1 ? Double.parseDouble(args[1]) / 100 : 0;
+		int connections = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+		int maxConcurrency = args.length > 4 ? Integer.parseInt(args[4]) : 64;
+
+		try (StandInDaoServer server = new StandInDaoServer(StandInDaoServer.CANNED,
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+				RemoteDao dao = new RemoteDao(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()), connections)) {
+			server.setLatency(latencyMillis * 1000, latencyMillis * 1000 / 2, TimeUnit.MICROSECONDS);
+			server.setErrorRate(errorRate);
+			ServiceImpl service = new ServiceImpl(dao);
+			System.out.println("latency " + latencyMillis + " ms + jitter, " + (errorRate * 100) + "% errors, " + connections
+					+ " connections");
+			for (int concurrency = 1; concurrency <= maxConcurrency; concurrency *= 2) {
+				System.out.println(run(service, concurrency, TimeUnit.SECONDS.toMillis(seconds)));
+			}
+		}
+	}
+}
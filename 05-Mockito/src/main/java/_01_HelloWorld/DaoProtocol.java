@@ -0,0 +1,72 @@
+package _01_HelloWorld;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Wire format between {@link RemoteDao} and {@link StandInDaoServer}. A request is the request id, the method
+ * and its string argument; a response is the request id, a status, a string and an int result. Strings are
+ * preceded by a presence flag so that null survives the round trip. Request ids let many calls share one
+ * connection, and responses may come back in any order.
+ */
+final class DaoProtocol {
+
+	static final byte GREET = 0;
+	static final byte QUESTION = 1;
+	static final byte GET_PRICE = 2;
+	static final byte BYE = 3;
+
+	static final byte OK = 0;
+	static final byte INVALID_QUESTION = 1;
+	static final byte ERROR = 2;
+
+	static final class Response {
+		final int id;
+		final byte status;
+		final String text;
+		final int number;
+
+		Response(int id, byte status, String text, int number) {
+			this.id = id;
+			this.status = status;
+			this.text = text;
+			this.number = number;
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			out.writeInt(id);
+			out.writeByte(status);
+			writeText(out, text);
+			out.writeInt(number);
+		}
+
+		static Response read(DataInputStream in) throws IOException {
+			return new Response(in.readInt(), in.readByte(), readText(in), in.readInt());
+		}
+	}
+
+	private DaoProtocol() {
+	}
+
+	static void writeRequest(DataOutputStream out, int id, byte method, String argument) throws IOException {
+		out.writeInt(id);
+		out.writeByte(method);
+		writeText(out, argument);
+	}
+
+	static String readRequestArgument(DataInputStream in) throws IOException {
+		return readText(in);
+	}
+
+	private static void writeText(DataOutputStream out, String text) throws IOException {
+		out.writeBoolean(text != null);
+		if (text != null) {
+			out.writeUTF(text);
+		}
+	}
+
+	private static String readText(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+}
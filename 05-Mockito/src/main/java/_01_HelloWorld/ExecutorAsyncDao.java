@@ -0,0 +1,58 @@
+package _01_HelloWorld;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs each call of a blocking {@link IDao} on an executor. The executor should be sized for blocking work;
+ * the common fork-join pool is not.
+ */
+public class ExecutorAsyncDao implements AsyncDao {
+
+	private interface Call<T> {
+		T call() throws InvalidQuestionException;
+	}
+
+	private final IDao dao;
+	private final Executor executor;
+
+	public ExecutorAsyncDao(IDao dao, Executor executor) {
+		this.dao = dao;
+		this.executor = executor;
+	}
+
+	@Override
+	public CompletableFuture<String> greet() {
+		return submit(() -> dao.greet());
+	}
+
+	@Override
+	public CompletableFuture<Integer> getPrice(String tutorial) {
+		return submit(() -> dao.getPrice(tutorial));
+	}
+
+	@Override
+	public CompletableFuture<String> question(String question) {
+		return submit(() -> dao.question(question));
+	}
+
+	@Override
+	public CompletableFuture<Void> bye() {
+		return submit(() -> {
+			dao.bye();
+			return null;
+		});
+	}
+
+	private <T> CompletableFuture<T> submit(Call<T> call) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		executor.execute(() -> {
+			try {
+				future.complete(call.call());
+			} catch (InvalidQuestionException | RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+}
@@ -1,5 +1,11 @@
 package _01_HelloWorld;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public interface IDao {
 	String HELLO_WORLD = "Hello World";
 	String ANY_NEW_TOPICS = "Are there any new topics?";
@@ -11,4 +17,27 @@ public interface IDao {
 	int getPrice(String tutorial);
 	String question(String question) throws InvalidQuestionException;
 	void bye();
+
+	/**
+	 * Answers in question order. DAOs that can send many questions in one round trip should override this.
+	 */
+	default List<String> questionAll(List<String> questions) throws InvalidQuestionException {
+		List<String> answers = new ArrayList<String>(questions.size());
+		for (String question : questions) {
+			answers.add(question(question));
+		}
+		return answers;
+	}
+
+	/**
+	 * Prices by tutorial, in iteration order of tutorials. DAOs that can look up many prices in one round
+	 * trip should override this.
+	 */
+	default Map<String, Integer> getPrices(Collection<String> tutorials) {
+		Map<String, Integer> prices = new LinkedHashMap<String, Integer>();
+		for (String tutorial : tutorials) {
+			prices.put(tutorial, getPrice(tutorial));
+		}
+		return prices;
+	}
 }
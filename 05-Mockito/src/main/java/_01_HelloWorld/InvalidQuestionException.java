@@ -1,6 +1,8 @@
 package _01_HelloWorld;
 
-public class InvalidQuestionException extends Exception {
+import common.BusinessException;
+
+public class InvalidQuestionException extends BusinessException {
 
 	/**
 	 * 
@@ -0,0 +1,169 @@
+package _01_HelloWorld;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects questions from concurrent callers and asks them through {@link ServiceImpl#questionAll(List)}, so
+ * a burst of questions shares one greet, one batched DAO call and one bye.
+ * <p>
+ * A batch starts with the first waiting question and closes when the window has passed or the batch is full,
+ * whichever comes first. If the DAO rejects a batch with {@link InvalidQuestionException}, its questions are
+ * asked again one by one so that only the invalid ones fail.
+ * <p>
+ * {@link #close()} lets the batch in flight and the questions already submitted finish. If the worker thread
+ * dies, the questions it can no longer ask fail with an IllegalStateException.
+ */
+public class QuestionBatcher implements Closeable {
+
+	private static final class Request {
+		final String question;
+		final CompletableFuture<String> answer = new CompletableFuture<String>();
+
+		Request(String question) {
+			this.question = question;
+		}
+	}
+
+	// wakes the worker on close
+	private static final Request STOP = new Request(null);
+
+	private final ServiceImpl service;
+	private final long windowNanos;
+	private final int maxBatchSize;
+	private final BlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+	private final Thread worker;
+	private volatile boolean running = true;
+
+	public QuestionBatcher(ServiceImpl service, long window, TimeUnit unit, int maxBatchSize) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+		}
+		this.service = service;
+		this.windowNanos = unit.toNanos(window);
+		this.maxBatchSize = maxBatchSize;
+		this.worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				work();
+			}
+		}, "QuestionBatcher");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * @return future failing with {@link InvalidQuestionException} or {@link DAONotAvailableException} where
+	 *         {@link ServiceImpl#question(String)} would throw them
+	 */
+	public CompletableFuture<String> submit(String question) {
+		Request request = new Request(question);
+		queue.add(request);
+		// the worker may be gone already, then nobody else will answer it
+		if (!running && queue.remove(request)) {
+			request.answer.completeExceptionally(new IllegalStateException("batcher closed"));
+		}
+		return request.answer;
+	}
+
+	/**
+	 * Stops taking questions, answers the ones already submitted without interrupting a DAO call in flight,
+	 * then waits for the worker to end.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		queue.add(STOP);
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void work() {
+		List<Request> batch = new ArrayList<Request>(maxBatchSize);
+		Throwable failure = null;
+		try {
+			Request first;
+			// once closed, only what is still queued
+			while ((first = running ? queue.take() : queue.poll()) != null) {
+				if (first == STOP) {
+					continue;
+				}
+				batch.add(first);
+				collect(batch);
+				ask(batch);
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			// nothing interrupts the worker but a dying JVM, stop like close
+			failure = e;
+		} catch (Throwable e) {
+			failure = e;
+			throw e;
+		} finally {
+			running = false;
+			IllegalStateException stopped = failure == null ? new IllegalStateException("batcher closed")
+					: new IllegalStateException("batcher worker failed", failure);
+			for (Request request : batch) {
+				request.answer.completeExceptionally(stopped);
+			}
+			for (Request request; (request = queue.poll()) != null;) {
+				if (request != STOP) {
+					request.answer.completeExceptionally(stopped);
+				}
+			}
+		}
+	}
+
+	private void collect(List<Request> batch) throws InterruptedException {
+		long deadline = System.nanoTime() + windowNanos;
+		while (batch.size() < maxBatchSize) {
+			queue.drainTo(batch, maxBatchSize - batch.size());
+			if (batch.remove(STOP)) {
+				return;
+			}
+			long remaining = deadline - System.nanoTime();
+			if (batch.size() == maxBatchSize || remaining <= 0 || !running) {
+				return;
+			}
+			Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+			if (next == null || next == STOP) {
+				return;
+			}
+			batch.add(next);
+		}
+	}
+
+	private void ask(List<Request> batch) {
+		List<String> questions = new ArrayList<String>(batch.size());
+		for (Request request : batch) {
+			questions.add(request.question);
+		}
+		try {
+			List<String> answers = service.questionAll(questions);
+			for (int i = 0; i < batch.size(); i++) {
+				batch.get(i).answer.complete(answers.get(i));
+			}
+		} catch (InvalidQuestionException e) {
+			if (batch.size() == 1) {
+				batch.get(0).answer.completeExceptionally(e);
+				return;
+			}
+			for (Request request : batch) {
+				ask(Collections.singletonList(request));
+			}
+		} catch (DAONotAvailableException | RuntimeException e) {
+			for (Request request : batch) {
+				request.answer.completeExceptionally(e);
+			}
+		}
+	}
+}
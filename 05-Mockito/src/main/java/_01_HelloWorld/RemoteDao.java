@@ -0,0 +1,209 @@
+package _01_HelloWorld;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import common.StacklessExceptions;
+
+/**
+ * {@link IDao} client of a {@link StandInDaoServer}.
+ * <p>
+ * A fixed pool of connections is opened up front and calls are spread over them round robin. Each connection
+ * is multiplexed: any number of threads can have calls in flight on it, and a reader thread hands every
+ * response to the caller waiting for its request id. A handful of connections therefore serves many threads
+ * without one socket per caller. Calls fail with an IllegalStateException on timeout, on a lost connection
+ * and on errors reported by the server. A lost connection fails the calls in flight on it and is opened again
+ * by the next call that picks it.
+ */
+public class RemoteDao implements IDao, Closeable {
+
+	private final InetSocketAddress address;
+	private final AtomicReferenceArray<Connection> connections;
+	private final AtomicInteger nextConnection = new AtomicInteger();
+	private final AtomicInteger nextId = new AtomicInteger();
+	private volatile long timeoutNanos = TimeUnit.SECONDS.toNanos(5);
+	private volatile boolean closed;
+
+	public RemoteDao(InetSocketAddress address, int connectionCount) throws IOException {
+		if (connectionCount < 1) {
+			throw new IllegalArgumentException("connectionCount must be positive: " + connectionCount);
+		}
+		this.address = address;
+		connections = new AtomicReferenceArray<Connection>(connectionCount);
+		try {
+			for (int i = 0; i < connectionCount; i++) {
+				connections.set(i, new Connection(address, i));
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	public void setTimeout(long timeout, TimeUnit unit) {
+		this.timeoutNanos = unit.toNanos(timeout);
+	}
+
+	@Override
+	public String greet() {
+		return call(DaoProtocol.GREET, "").text;
+	}
+
+	@Override
+	public int getPrice(String tutorial) {
+		return call(DaoProtocol.GET_PRICE, tutorial).number;
+	}
+
+	@Override
+	public String question(String question) throws InvalidQuestionException {
+		DaoProtocol.Response response = call(DaoProtocol.QUESTION, question);
+		if (response.status == DaoProtocol.INVALID_QUESTION) {
+			throw StacklessExceptions.newInstance(InvalidQuestionException.class);
+		}
+		return response.text;
+	}
+
+	@Override
+	public void bye() {
+		call(DaoProtocol.BYE, "");
+	}
+
+	@Override
+	public void close() {
+		synchronized (connections) {
+			closed = true;
+			for (int i = 0; i < connections.length(); i++) {
+				Connection connection = connections.get(i);
+				if (connection != null) {
+					connection.close();
+				}
+			}
+		}
+	}
+
+	private DaoProtocol.Response call(byte method, String argument) {
+		int id = nextId.incrementAndGet();
+		CompletableFuture<DaoProtocol.Response> future = new CompletableFuture<DaoProtocol.Response>();
+		Connection connection = connection((nextConnection.getAndIncrement() & Integer.MAX_VALUE) % connections.length());
+		connection.pending.put(id, future);
+		if (connection.closed) {
+			// lost before the reader could see this call
+			future.completeExceptionally(new IOException("connection closed"));
+		}
+		try {
+			connection.send(id, method, argument);
+			DaoProtocol.Response response = future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+			if (response.status == DaoProtocol.ERROR) {
+				throw new IllegalStateException("DAO failed: " + response.text);
+			}
+			return response;
+		} catch (IOException e) {
+			connection.close();
+			throw new IllegalStateException("connection lost", e);
+		} catch (TimeoutException e) {
+			throw new IllegalStateException("no response within " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("connection lost", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted");
+		} finally {
+			connection.pending.remove(id);
+		}
+	}
+
+	/**
+	 * The connection in the slot, opened again first if it was lost.
+	 */
+	private Connection connection(int slot) {
+		Connection connection = connections.get(slot);
+		if (!connection.closed) {
+			return connection;
+		}
+		synchronized (connections) {
+			if (closed) {
+				throw new IllegalStateException("closed");
+			}
+			connection = connections.get(slot);
+			if (connection.closed) {
+				try {
+					connection = new Connection(address, slot);
+				} catch (IOException e) {
+					throw new IllegalStateException("cannot reconnect", e);
+				}
+				connections.set(slot, connection);
+			}
+			return connection;
+		}
+	}
+
+	private static final class Connection {
+		final ConcurrentHashMap<Integer, CompletableFuture<DaoProtocol.Response>> pending =
+				new ConcurrentHashMap<Integer, CompletableFuture<DaoProtocol.Response>>();
+		private final Socket socket;
+		private final DataOutputStream out;
+		volatile boolean closed;
+
+		Connection(InetSocketAddress address, int index) throws IOException {
+			socket = new Socket();
+			socket.setTcpNoDelay(true);
+			socket.connect(address);
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			Thread reader = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					read(in);
+				}
+			}, "RemoteDao-" + index);
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		void send(int id, byte method, String argument) throws IOException {
+			synchronized (out) {
+				DaoProtocol.writeRequest(out, id, method, argument);
+				out.flush();
+			}
+		}
+
+		private void read(DataInputStream in) {
+			try {
+				while (true) {
+					DaoProtocol.Response response = DaoProtocol.Response.read(in);
+					CompletableFuture<DaoProtocol.Response> future = pending.get(response.id);
+					if (future != null) {
+						future.complete(response);
+					}
+				}
+			} catch (IOException e) {
+				close();
+				for (CompletableFuture<DaoProtocol.Response> future : pending.values()) {
+					future.completeExceptionally(e);
+				}
+			}
+		}
+
+		void close() {
+			closed = true;
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// closing anyway
+			}
+		}
+	}
+}
@@ -1,13 +1,92 @@
 package _01_HelloWorld;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import common.StacklessExceptions;
+import common.Trace;
+import common.TraceEvent;
+
 public class ServiceImpl {
 	IDao foo;
+	private ConnectionHealthCheck healthCheck;
+	private AsyncDao asyncFoo;
+	private QuestionBatcher batcher;
 	public ServiceImpl(IDao dao){
 		this.foo = dao;
 	}
+
+	/**
+	 * With a health check, questions rely on its cached greet instead of greeting every time.
+	 */
+	public void setHealthCheck(ConnectionHealthCheck healthCheck) {
+		this.healthCheck = healthCheck;
+	}
+	
+	/**
+	 * With a batcher, {@link #questionBatch(String)} waits for other callers' questions and asks them together.
+	 */
+	public void setQuestionBatcher(QuestionBatcher batcher) {
+		this.batcher = batcher;
+	}
+
+	/**
+	 * The DAO used by {@link #questionAsync(String)}, for example an {@link ExecutorAsyncDao} over the same IDao.
+	 */
+	public void setAsyncDao(AsyncDao asyncFoo) {
+		this.asyncFoo = asyncFoo;
+	}
+
+	/**
+	 * Same conversation as {@link #question(String)} without blocking the caller. The health check and the first
+	 * question are sent together; if the DAO turns out to be unavailable the answer is discarded and the future
+	 * fails with {@link DAONotAvailableException}. The later steps depend on each other and stay in order.
+	 *
+	 * @return future failing with DAONotAvailableException or InvalidQuestionException where
+	 *         {@link #question(String)} would throw them
+	 */
+	public CompletableFuture<String> questionAsync(String question) {
+		if (asyncFoo == null) {
+			throw new IllegalStateException("no AsyncDao set");
+		}
+		CompletableFuture<Void> available;
+		if (healthCheck != null) {
+			available = healthCheck.verifyAsync(asyncFoo);
+		} else {
+			available = asyncFoo.greet().thenCompose(response -> {
+				CompletableFuture<Void> verified = new CompletableFuture<Void>();
+				if (IDao.HELLO_WORLD.equals(response)) {
+					verified.complete(null);
+				} else {
+					verified.completeExceptionally(StacklessExceptions.newInstance(DAONotAvailableException.class));
+				}
+				return verified;
+			});
+		}
+		// when both fail, the health check's exception is the one reported
+		return available.thenCombine(asyncFoo.question(question), (ignored, answer) -> answer).thenCompose(answer -> {
+			switch (answer) {
+			case IDao.NO_NEW_TOPIC:
+				return asyncFoo.bye().thenApply(ignored -> answer);
+			case IDao.YES_NEW_TOPICS_AVAILABLE:
+				return asyncFoo.question(IDao.WHAT_IS_TODAYS_TOPIC).thenCompose(topic -> asyncFoo.getPrice(topic)
+						.thenCompose(price -> asyncFoo.bye().thenApply(ignored -> "Topic is " + topic + ", price is " + price)));
+			default:
+				Trace.trace(TraceEvent.UNEXPECTED_ANSWER, answer);
+				return CompletableFuture.completedFuture(answer);
+			}
+		});
+	}
 	
 	public String question(String question) throws InvalidQuestionException, DAONotAvailableException {
-		verifyFooConnection(foo);
+		if (healthCheck != null) {
+			healthCheck.verify();
+		} else {
+			verifyFooConnection(foo);
+		}
 		String answer= foo.question(question);		
 		switch (answer) {
 		case IDao.NO_NEW_TOPIC:
@@ -20,19 +99,95 @@ public class ServiceImpl {
 			answer = "Topic is " + answer + ", price is " + price;
 			break;
 		default:
-			System.out.println("Answer is " + answer);
+			Trace.trace(TraceEvent.UNEXPECTED_ANSWER, answer);
 			break;
 		}
 		return answer;
 	}
 	
+	/**
+	 * Asks many questions in one conversation: one health check, one {@link IDao#questionAll(List)}, at most one
+	 * topic and price lookup for all questions answered {@link IDao#YES_NEW_TOPICS_AVAILABLE}, and one bye.
+	 *
+	 * @return answers in question order, the same each would get from {@link #question(String)}
+	 * @throws IllegalStateException if the DAO has no price for today's topic
+	 */
+	public List<String> questionAll(List<String> questions) throws InvalidQuestionException, DAONotAvailableException {
+		if (healthCheck != null) {
+			healthCheck.verify();
+		} else {
+			verifyFooConnection(foo);
+		}
+		List<String> answers = new ArrayList<String>(foo.questionAll(questions));
+		String topicAnswer = null;
+		boolean conversation = false;
+		for (int i = 0; i < answers.size(); i++) {
+			String answer = answers.get(i);
+			switch (answer) {
+			case IDao.NO_NEW_TOPIC:
+				conversation = true;
+				break;
+			case IDao.YES_NEW_TOPICS_AVAILABLE:
+				conversation = true;
+				if (topicAnswer == null) {
+					String topic = foo.question(IDao.WHAT_IS_TODAYS_TOPIC);
+					Integer price = foo.getPrices(Collections.singletonList(topic)).get(topic);
+					if (price == null) {
+						throw new IllegalStateException("no price for topic " + topic);
+					}
+					topicAnswer = "Topic is " + topic + ", price is " + price;
+				}
+				answers.set(i, topicAnswer);
+				break;
+			default:
+				Trace.trace(TraceEvent.UNEXPECTED_ANSWER, answer);
+				break;
+			}
+		}
+		if (conversation) {
+			foo.bye();
+		}
+		return answers;
+	}
+
+	/**
+	 * Same as {@link #question(String)}, but shares the DAO round trips with concurrent callers when a
+	 * {@link QuestionBatcher} is set.
+	 *
+	 * @throws IllegalStateException if the thread is interrupted while waiting for the batch; the interrupt flag
+	 *         stays set
+	 */
+	public String questionBatch(String question) throws InvalidQuestionException, DAONotAvailableException {
+		if (batcher == null) {
+			return question(question);
+		}
+		try {
+			return batcher.submit(question).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while waiting for the batch", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof InvalidQuestionException) {
+				throw (InvalidQuestionException) cause;
+			}
+			if (cause instanceof DAONotAvailableException) {
+				throw (DAONotAvailableException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
 	public void verifyFooConnection(IDao foo) throws DAONotAvailableException {
-		System.out.println("Is Foo available?");
+		Trace.trace(TraceEvent.DAO_AVAILABILITY_CHECK);
 		String response = foo.greet();
 		if (!IDao.HELLO_WORLD.equals(response)) {
-			System.out.println("No");
-			throw new DAONotAvailableException();
+			Trace.trace(TraceEvent.DAO_NOT_AVAILABLE);
+			throw StacklessExceptions.newInstance(DAONotAvailableException.class);
 		}
-		System.out.println("Yes");
+		Trace.trace(TraceEvent.DAO_AVAILABLE);
 	}	
 }
@@ -0,0 +1,220 @@
+package _01_HelloWorld;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import common.StacklessExceptions;
+
+/**
+ * Serves an {@link IDao} over loopback for {@link RemoteDao}, adding latency and failures on demand, so that
+ * {@link ServiceImpl} can be measured against something that behaves like a remote DAO.
+ * <p>
+ * Each response is held back by the fixed latency plus a uniformly random jitter; requests on the same
+ * connection are delayed independently, as a real backend would answer them. With the error rate, a share
+ * of the calls fails instead of reaching the IDao.
+ */
+public class StandInDaoServer implements Closeable {
+
+	/**
+	 * Answers a conversation the way the tests expect: new topics are available, today's topic is Mockito at a
+	 * price of 99, and any other question is invalid.
+	 */
+	public static final IDao CANNED = new IDao() {
+		@Override
+		public String greet() {
+			return HELLO_WORLD;
+		}
+
+		@Override
+		public int getPrice(String tutorial) {
+			return 99;
+		}
+
+		@Override
+		public String question(String question) throws InvalidQuestionException {
+			if (ANY_NEW_TOPICS.equals(question)) {
+				return YES_NEW_TOPICS_AVAILABLE;
+			}
+			if (WHAT_IS_TODAYS_TOPIC.equals(question)) {
+				return TOPIC_MOCKITO;
+			}
+			throw StacklessExceptions.newInstance(InvalidQuestionException.class);
+		}
+
+		@Override
+		public void bye() {
+		}
+	};
+
+	private final IDao backend;
+	private final ServerSocket serverSocket;
+	private final ScheduledExecutorService delayer;
+	private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+	private volatile long latencyNanos;
+	private volatile long jitterNanos;
+	private volatile double errorRate;
+	private volatile boolean running = true;
+
+	public StandInDaoServer(IDao backend, InetSocketAddress address) throws IOException {
+		this.backend = backend;
+		this.serverSocket = new ServerSocket();
+		serverSocket.bind(address);
+		this.delayer = Executors.newScheduledThreadPool(2, daemon("StandInDaoServer-delayer"));
+		daemon("StandInDaoServer-" + getPort()).newThread(new Runnable() {
+			@Override
+			public void run() {
+				accept();
+			}
+		}).start();
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Every response waits latency plus a random share of jitter.
+	 */
+	public void setLatency(long latency, long jitter, TimeUnit unit) {
+		this.latencyNanos = unit.toNanos(latency);
+		this.jitterNanos = unit.toNanos(jitter);
+	}
+
+	/**
+	 * @param errorRate share of calls, from 0 to 1, that fail without reaching the IDao
+	 */
+	public void setErrorRate(double errorRate) {
+		this.errorRate = errorRate;
+	}
+
+	/**
+	 * Closes the open connections but keeps accepting new ones, like a network blip would.
+	 */
+	public void dropConnections() throws IOException {
+		for (Socket connection : connections) {
+			connection.close();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		running = false;
+		serverSocket.close();
+		for (Socket connection : connections) {
+			connection.close();
+		}
+		delayer.shutdownNow();
+	}
+
+	private static ThreadFactory daemon(final String name) {
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name);
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	private void accept() {
+		while (running) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				connections.add(socket);
+			} catch (IOException e) {
+				// closed
+				return;
+			}
+			daemon("StandInDaoServer-connection").newThread(new Runnable() {
+				@Override
+				public void run() {
+					serve(socket);
+				}
+			}).start();
+		}
+	}
+
+	private void serve(Socket socket) {
+		try (Socket connection = socket) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+			while (running) {
+				final int id = in.readInt();
+				byte method = in.readByte();
+				String argument = DaoProtocol.readRequestArgument(in);
+				final DaoProtocol.Response response = answer(id, method, argument);
+				long delay = latencyNanos + (jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos) : 0);
+				if (delay <= 0) {
+					send(out, response);
+				} else {
+					delayer.schedule(new Runnable() {
+						@Override
+						public void run() {
+							send(out, response);
+						}
+					}, delay, TimeUnit.NANOSECONDS);
+				}
+			}
+		} catch (EOFException e) {
+			// client hung up
+		} catch (IOException e) {
+			// connection lost or server closed
+		} finally {
+			connections.remove(socket);
+		}
+	}
+
+	private DaoProtocol.Response answer(int id, byte method, String argument) {
+		if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+			return new DaoProtocol.Response(id, DaoProtocol.ERROR, "injected failure", 0);
+		}
+		try {
+			switch (method) {
+			case DaoProtocol.GREET:
+				return new DaoProtocol.Response(id, DaoProtocol.OK, backend.greet(), 0);
+			case DaoProtocol.QUESTION:
+				return new DaoProtocol.Response(id, DaoProtocol.OK, backend.question(argument), 0);
+			case DaoProtocol.GET_PRICE:
+				return new DaoProtocol.Response(id, DaoProtocol.OK, "", backend.getPrice(argument));
+			case DaoProtocol.BYE:
+				backend.bye();
+				return new DaoProtocol.Response(id, DaoProtocol.OK, "", 0);
+			default:
+				return new DaoProtocol.Response(id, DaoProtocol.ERROR, "unknown method " + method, 0);
+			}
+		} catch (InvalidQuestionException e) {
+			return new DaoProtocol.Response(id, DaoProtocol.INVALID_QUESTION, "", 0);
+		} catch (RuntimeException e) {
+			return new DaoProtocol.Response(id, DaoProtocol.ERROR, String.valueOf(e), 0);
+		}
+	}
+
+	private static void send(DataOutputStream out, DaoProtocol.Response response) {
+		synchronized (out) {
+			try {
+				response.write(out);
+				out.flush();
+			} catch (IOException e) {
+				// the client is gone, its reader has already seen the connection end
+			}
+		}
+	}
+}
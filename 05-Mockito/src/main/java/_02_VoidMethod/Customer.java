@@ -1,6 +1,13 @@
 package _02_VoidMethod;
 
+import common.Trace;
+import common.TraceEvent;
+
 public class Customer {
+	public enum Outcome {
+		EATEN, WRONG_DISH, NOT_TASTY
+	}
+
 	Dish dish;
 	
 	public Customer(Dish dish){
@@ -9,15 +16,30 @@ public class Customer {
 
 	public void eat(String spicy) throws WrongDishException, NotSuchATastyException{
 		try {
-			System.out.println("Taste the food");
+			Trace.trace(TraceEvent.DISH_TASTED);
 			dish.eat(spicy);
-			System.out.println("Ate the food");
+			Trace.trace(TraceEvent.DISH_EATEN);
 		} catch (WrongDishException e) {
-			System.out.println("Wrong dish!");
+			Trace.trace(TraceEvent.WRONG_DISH);
 			throw e;
 		} catch (NotSuchATastyException e) {
-			System.out.println("Not very tasty");
+			Trace.trace(TraceEvent.NOT_TASTY);
 			throw e;
 		}		
 	}
+
+	/**
+	 * Same as {@link #eat(String)}, reporting the outcome instead of rethrowing. The dish itself still signals
+	 * with exceptions, which are cheap in {@link common.StacklessExceptions stackless mode}.
+	 */
+	public Outcome tryEat(String spicy) {
+		try {
+			eat(spicy);
+			return Outcome.EATEN;
+		} catch (WrongDishException e) {
+			return Outcome.WRONG_DISH;
+		} catch (NotSuchATastyException e) {
+			return Outcome.NOT_TASTY;
+		}
+	}
 }
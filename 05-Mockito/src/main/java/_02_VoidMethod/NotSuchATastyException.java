@@ -1,6 +1,8 @@
 package _02_VoidMethod;
 
-public class NotSuchATastyException extends Exception {
+import common.BusinessException;
+
+public class NotSuchATastyException extends BusinessException {
 
 	/**
 	 * 
@@ -1,6 +1,8 @@
 package _02_VoidMethod;
 
-public class WrongDishException extends Exception {
+import common.BusinessException;
+
+public class WrongDishException extends BusinessException {
 
 	/**
 	 * 
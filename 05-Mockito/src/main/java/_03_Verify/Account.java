@@ -2,4 +2,23 @@ package _03_Verify;
 
 public class Account {
 
+	/** Id of accounts not kept by a {@link DenseAccountManager}. */
+	public static final int NO_ID = -1;
+
+	private final int id;
+
+	public Account() {
+		this(NO_ID);
+	}
+
+	public Account(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * @return dense id assigned by the {@link DenseAccountManager} that opened this account, or {@link #NO_ID}
+	 */
+	public int getId() {
+		return id;
+	}
 }
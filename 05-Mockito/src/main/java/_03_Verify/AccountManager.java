@@ -2,10 +2,43 @@ package _03_Verify;
 
 public interface AccountManager {
 
+	/**
+	 * Returned by {@link #tryWithdraw(Account, long)} when the balance does not cover the amount. A balance can
+	 * be Long.MIN_VALUE, but never one returned by a successful tryWithdraw: the amount is positive and covered,
+	 * so the balance left is between 0 and the balance before.
+	 */
+	long INSUFFICIENT_FUNDS = Long.MIN_VALUE;
+
 	long getBalance(Account account);
 
 	long withdraw(Account account, long amount);
 
 	Account findAccount(Customer customer);
 
+	/**
+	 * Withdraws amount only if the balance covers it. This default checks and withdraws in separate calls and is
+	 * not atomic; implementations used concurrently override it, and must keep the balance they return from a
+	 * successful withdrawal non-negative.
+	 *
+	 * @return the balance after the withdrawal, never negative, or {@link #INSUFFICIENT_FUNDS} with the balance
+	 *         unchanged
+	 * @throws IllegalArgumentException if amount is not positive
+	 */
+	default long tryWithdraw(Account account, long amount) {
+		checkAmount(amount);
+		long balance = getBalance(account);
+		if (balance < amount) {
+			return INSUFFICIENT_FUNDS;
+		}
+		withdraw(account, amount);
+		// what this withdrawal left, a concurrent change must not turn it into INSUFFICIENT_FUNDS
+		return balance - amount;
+	}
+
+	static void checkAmount(long amount) {
+		if (amount <= 0) {
+			throw new IllegalArgumentException("amount must be positive: " + amount);
+		}
+	}
+
 }
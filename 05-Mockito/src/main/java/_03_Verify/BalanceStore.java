@@ -0,0 +1,92 @@
+package _03_Verify;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Balances indexed by dense int id, stored as primitive longs in shards of {@link #SHARD_SIZE} ids. Shards are
+ * allocated as ids reach them and never move, so a balance update touches one array slot and allocates
+ * nothing: 10 million accounts take 80 MB and no per-account objects. All operations are atomic per id.
+ */
+public class BalanceStore {
+
+	public static final int SHARD_BITS = 16;
+	public static final int SHARD_SIZE = 1 << SHARD_BITS;
+
+	private static final int SHARD_MASK = SHARD_SIZE - 1;
+
+	private volatile AtomicLongArray[] shards = new AtomicLongArray[0];
+
+	/**
+	 * Makes ids below capacity usable, with a balance of 0 for new ones.
+	 */
+	public void ensureCapacity(int capacity) {
+		int needed = (int) (((long) capacity + SHARD_MASK) >>> SHARD_BITS);
+		if (needed > shards.length) {
+			grow(needed);
+		}
+	}
+
+	private synchronized void grow(int needed) {
+		AtomicLongArray[] current = shards;
+		if (needed <= current.length) {
+			return;
+		}
+		// only the array of references is copied, existing shards are shared with the old one
+		AtomicLongArray[] grown = Arrays.copyOf(current, needed);
+		for (int i = current.length; i < grown.length; i++) {
+			grown[i] = new AtomicLongArray(SHARD_SIZE);
+		}
+		shards = grown;
+	}
+
+	/**
+	 * @return number of ids currently backed by a shard
+	 */
+	public long capacity() {
+		return (long) shards.length << SHARD_BITS;
+	}
+
+	public long get(int id) {
+		return shard(id).get(id & SHARD_MASK);
+	}
+
+	public void set(int id, long balance) {
+		shard(id).set(id & SHARD_MASK, balance);
+	}
+
+	public long addAndGet(int id, long delta) {
+		return shard(id).addAndGet(id & SHARD_MASK, delta);
+	}
+
+	/**
+	 * Subtracts amount only if the balance covers it.
+	 *
+	 * @return the new balance, or {@link AccountManager#INSUFFICIENT_FUNDS} with the balance unchanged
+	 * @throws IllegalArgumentException if amount is not positive
+	 */
+	public long tryWithdraw(int id, long amount) {
+		AccountManager.checkAmount(amount);
+		AtomicLongArray shard = shard(id);
+		int index = id & SHARD_MASK;
+		while (true) {
+			long current = shard.get(index);
+			if (current < amount) {
+				return AccountManager.INSUFFICIENT_FUNDS;
+			}
+			long next = current - amount;
+			if (shard.compareAndSet(index, current, next)) {
+				return next;
+			}
+		}
+	}
+
+	private AtomicLongArray shard(int id) {
+		AtomicLongArray[] current = shards;
+		int shard = id >>> SHARD_BITS;
+		if (id < 0 || shard >= current.length) {
+			throw new IllegalArgumentException("unknown account id " + id);
+		}
+		return current[shard];
+	}
+}
@@ -0,0 +1,82 @@
+package _03_Verify;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory ledger safe for any number of threads. Each balance is an AtomicLong, and
+ * {@link #tryWithdraw(Account, long)} checks and withdraws in one compare-and-set, so two customers can never
+ * both spend the same funds. Threads working on different accounts do not contend at all; a rejection is a
+ * plain read.
+ */
+public class ConcurrentAccountManager implements AccountManager {
+
+	private final ConcurrentMap<Customer, Account> accounts = new ConcurrentHashMap<Customer, Account>();
+	private final ConcurrentMap<Account, AtomicLong> balances = new ConcurrentHashMap<Account, AtomicLong>();
+
+	/**
+	 * @return the customer's account, opened with the given balance if the customer had none
+	 */
+	public Account open(Customer customer, long balance) {
+		Account account = accounts.get(customer);
+		if (account == null) {
+			Account opened = new Account();
+			// the balance exists before the account can be found
+			balances.put(opened, new AtomicLong(balance));
+			account = accounts.putIfAbsent(customer, opened);
+			if (account == null) {
+				account = opened;
+			} else {
+				balances.remove(opened);
+			}
+		}
+		return account;
+	}
+
+	@Override
+	public Account findAccount(Customer customer) {
+		return accounts.get(customer);
+	}
+
+	@Override
+	public long getBalance(Account account) {
+		return balance(account).get();
+	}
+
+	/**
+	 * Unconditional withdrawal; the balance may go negative.
+	 */
+	@Override
+	public long withdraw(Account account, long amount) {
+		return balance(account).addAndGet(-amount);
+	}
+
+	public long deposit(Account account, long amount) {
+		return balance(account).addAndGet(amount);
+	}
+
+	@Override
+	public long tryWithdraw(Account account, long amount) {
+		AccountManager.checkAmount(amount);
+		AtomicLong balance = balance(account);
+		while (true) {
+			long current = balance.get();
+			if (current < amount) {
+				return INSUFFICIENT_FUNDS;
+			}
+			long next = current - amount;
+			if (balance.compareAndSet(current, next)) {
+				return next;
+			}
+		}
+	}
+
+	private AtomicLong balance(Account account) {
+		AtomicLong balance = balances.get(account);
+		if (balance == null) {
+			throw new IllegalArgumentException("unknown account " + account);
+		}
+		return balance;
+	}
+}
@@ -1,20 +1,36 @@
 package _03_Verify;
 
+import common.StacklessExceptions;
 
 public class Customer {
+	/**
+	 * Returned by {@link #tryWithdraw(long)} instead of throwing {@link NotEnoughFundsException}.
+	 */
+	public static final long NOT_ENOUGH_FUNDS = AccountManager.INSUFFICIENT_FUNDS;
+
 	private AccountManager accountManager;
 
 	public long withdraw(long amount) throws NotEnoughFundsException {
 		Account account = accountManager.findAccount(this);
 		long balance = accountManager.getBalance(account);
 		if (balance < amount) {
-			throw new NotEnoughFundsException();
+			throw StacklessExceptions.newInstance(NotEnoughFundsException.class);
 		}
 		accountManager.withdraw(account, amount);
 		return accountManager.getBalance(account);
 	}
 
+	/**
+	 * Same as {@link #withdraw(long)}, with a rejection costing no more than a withdrawal. The check and the
+	 * withdrawal are one {@link AccountManager#tryWithdraw(Account, long)}, atomic if the manager makes it so.
+	 *
+	 * @return the balance after the withdrawal, or {@link #NOT_ENOUGH_FUNDS}
+	 */
+	public long tryWithdraw(long amount) {
+		return accountManager.tryWithdraw(accountManager.findAccount(this), amount);
+	}
+
 	public void setAccountManager(AccountManager accountManager) {
 		this.accountManager = accountManager;
 	}
-}
\ No newline at end of file
+}
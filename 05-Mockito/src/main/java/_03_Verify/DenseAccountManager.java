@@ -0,0 +1,99 @@
+package _03_Verify;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * AccountManager for very many accounts. Accounts get consecutive int ids and their balances live in a
+ * {@link BalanceStore}, so there is no map from accounts to boxed balances and updates create no garbage.
+ * Callers that keep ids instead of Account objects can use the id-based methods and skip objects entirely.
+ * Safe for any number of threads.
+ */
+public class DenseAccountManager implements AccountManager {
+
+	private final BalanceStore balances = new BalanceStore();
+	private final Object openLock = new Object();
+	// ids below size have their balance stored; written only under openLock
+	private volatile int size;
+	private final ConcurrentMap<Customer, Account> accounts = new ConcurrentHashMap<Customer, Account>();
+
+	/**
+	 * Opens an account that has no customer. Openings are serialized; the id becomes valid only once its
+	 * balance is stored.
+	 *
+	 * @return the new account's id
+	 */
+	public int open(long balance) {
+		synchronized (openLock) {
+			int id = size;
+			if (id == Integer.MAX_VALUE) {
+				throw new IllegalStateException("account ids exhausted");
+			}
+			balances.ensureCapacity(id + 1);
+			balances.set(id, balance);
+			size = id + 1;
+			return id;
+		}
+	}
+
+	/**
+	 * @return the customer's account, opened with the given balance if the customer had none
+	 */
+	public Account open(Customer customer, long balance) {
+		Account account = accounts.get(customer);
+		if (account == null) {
+			// the customer's slot is reserved before the id is allocated, so a losing caller opens nothing
+			account = accounts.computeIfAbsent(customer, c -> new Account(open(balance)));
+		}
+		return account;
+	}
+
+	/**
+	 * @return number of ids handed out so far
+	 */
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Account findAccount(Customer customer) {
+		return accounts.get(customer);
+	}
+
+	@Override
+	public long getBalance(Account account) {
+		return getBalance(account.getId());
+	}
+
+	public long getBalance(int id) {
+		return balances.get(checkId(id));
+	}
+
+	/**
+	 * Unconditional withdrawal; the balance may go negative.
+	 */
+	@Override
+	public long withdraw(Account account, long amount) {
+		return balances.addAndGet(checkId(account.getId()), -amount);
+	}
+
+	@Override
+	public long tryWithdraw(Account account, long amount) {
+		return tryWithdraw(account.getId(), amount);
+	}
+
+	public long tryWithdraw(int id, long amount) {
+		return balances.tryWithdraw(checkId(id), amount);
+	}
+
+	public long deposit(int id, long amount) {
+		return balances.addAndGet(checkId(id), amount);
+	}
+
+	private int checkId(int id) {
+		if (id < 0 || id >= size) {
+			throw new IllegalArgumentException("unknown account id " + id);
+		}
+		return id;
+	}
+}
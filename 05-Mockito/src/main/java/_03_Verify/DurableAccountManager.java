@@ -0,0 +1,438 @@
+package _03_Verify;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * AccountManager whose balances survive restarts, kept in a directory of its own.
+ * <p>
+ * Balances live in a {@link BalanceStore} like in {@link DenseAccountManager}. Every change is appended to a
+ * {@link WriteAheadLog} as a delta and made durable before the call returns; concurrent callers share fsyncs
+ * through the log's group commit. Each change is applied and appended under the log's lock, so the log holds
+ * the changes in the order they were made and replay never spends funds before they arrive. Rejected
+ * withdrawals change nothing and write nothing. A change is visible to other threads slightly before it is
+ * durable.
+ * <p>
+ * Every {@link #setSnapshotEvery(long) so many} records a background thread writes all balances to a
+ * memory-mapped snapshot file, renamed into place once complete, and drops the log segments it covers, so a
+ * restart loads the snapshot and replays only the log tail. The snapshot holds the log's lock while it starts
+ * a new segment and copies the balances, which makes it exactly the state after the last record of the old
+ * segments.
+ * <p>
+ * Customers are not persisted: after a restart, {@link #attach(Customer, int)} links them to their accounts
+ * again. If the log cannot be written, the failing call and every later call, reads included, throw
+ * UncheckedIOException, since the balances in memory may hold changes the log lost.
+ */
+public class DurableAccountManager implements AccountManager, Closeable {
+
+	public static final long DEFAULT_SNAPSHOT_EVERY = 1000000;
+
+	static final byte OPEN = 1;
+	static final byte ADD = 2;
+
+	private static final String SNAPSHOT = "snapshot";
+	private static final String SNAPSHOT_TMP = "snapshot.tmp";
+	// "LEDG"
+	private static final int MAGIC = 0x4C454447;
+	// magic, sequence, count, crc of the balances
+	private static final int HEADER_SIZE = 4 + 8 + 4 + 4;
+	// 128 MB per mapping, well below the 2 GB a MappedByteBuffer can address
+	private static final int CHUNK_LONGS = 1 << 24;
+
+	private final Path directory;
+	private final BalanceStore balances = new BalanceStore();
+	// ids below size have their balance stored and their opening logged; written only under the log's lock
+	private volatile int size;
+	private final ConcurrentMap<Customer, Account> accounts = new ConcurrentHashMap<Customer, Account>();
+	private final WriteAheadLog log;
+	private final ExecutorService snapshotter;
+	private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+	private final Object snapshotLock = new Object();
+	private volatile long snapshotEvery = DEFAULT_SNAPSHOT_EVERY;
+	private volatile IOException snapshotFailure;
+
+	/**
+	 * Opens the ledger in directory, creating it if needed, and recovers the balances from the latest snapshot
+	 * and the log after it.
+	 */
+	public DurableAccountManager(Path directory) throws IOException {
+		this.directory = directory;
+		Files.createDirectories(directory);
+		Files.deleteIfExists(directory.resolve(SNAPSHOT_TMP));
+		long snapshotSequence = loadSnapshot();
+		long lastSequence = WriteAheadLog.replay(directory, snapshotSequence, (type, id, value) -> {
+			if (type == OPEN) {
+				balances.ensureCapacity(id + 1);
+				balances.set(id, value);
+				if (id >= size) {
+					size = id + 1;
+				}
+			} else {
+				balances.addAndGet(id, value);
+			}
+		});
+		this.log = new WriteAheadLog(directory, lastSequence);
+		this.snapshotter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "DurableAccountManager-Snapshot");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Log records between automatic snapshots; 0 leaves snapshots to {@link #snapshot()}.
+	 */
+	public void setSnapshotEvery(long records) {
+		this.snapshotEvery = records;
+	}
+
+	/**
+	 * @return the error of the latest failed background snapshot, null if it succeeded
+	 */
+	public IOException getSnapshotFailure() {
+		return snapshotFailure;
+	}
+
+	/**
+	 * @return number of fsyncs of the log since opening, for comparison with the number of changes
+	 */
+	public long getSyncCount() {
+		return log.syncCount();
+	}
+
+	/**
+	 * Opens an account that has no customer.
+	 *
+	 * @return the new account's id, once the opening is durable
+	 */
+	public int open(long balance) {
+		long[] sequence = new long[1];
+		int id = open(balance, sequence);
+		sync(sequence[0]);
+		return id;
+	}
+
+	/**
+	 * Stores and logs an opening; the id becomes valid only after its record is appended, so no change to the
+	 * account can be logged ahead of it.
+	 */
+	private int open(long balance, long[] sequence) {
+		log.lock();
+		try {
+			checkNotFailed();
+			int id = size;
+			if (id == Integer.MAX_VALUE) {
+				throw new IllegalStateException("account ids exhausted");
+			}
+			balances.ensureCapacity(id + 1);
+			balances.set(id, balance);
+			sequence[0] = log.append(OPEN, id, balance);
+			size = id + 1;
+			return id;
+		} finally {
+			log.unlock();
+		}
+	}
+
+	/**
+	 * @return the customer's account, opened with the given balance if the customer had none
+	 */
+	public Account open(Customer customer, long balance) {
+		Account account = accounts.get(customer);
+		if (account == null) {
+			// the customer's slot is reserved before the id is allocated, the fsync happens outside it
+			long[] sequence = new long[1];
+			account = accounts.computeIfAbsent(customer, c -> new Account(open(balance, sequence)));
+			if (sequence[0] != 0) {
+				sync(sequence[0]);
+			}
+		}
+		return account;
+	}
+
+	/**
+	 * Links a customer to an existing account, typically after a restart.
+	 */
+	public Account attach(Customer customer, int id) {
+		Account account = new Account(checkId(id));
+		accounts.put(customer, account);
+		return account;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Account findAccount(Customer customer) {
+		return accounts.get(customer);
+	}
+
+	@Override
+	public long getBalance(Account account) {
+		return getBalance(account.getId());
+	}
+
+	/**
+	 * @throws UncheckedIOException once the log has failed, as the balance may include changes that were lost
+	 */
+	public long getBalance(int id) {
+		checkNotFailed();
+		return balances.get(checkId(id));
+	}
+
+	/**
+	 * Unconditional withdrawal; the balance may go negative.
+	 */
+	@Override
+	public long withdraw(Account account, long amount) {
+		return add(account.getId(), -amount);
+	}
+
+	public long deposit(int id, long amount) {
+		return add(id, amount);
+	}
+
+	@Override
+	public long tryWithdraw(Account account, long amount) {
+		return tryWithdraw(account.getId(), amount);
+	}
+
+	public long tryWithdraw(int id, long amount) {
+		checkId(id);
+		AccountManager.checkAmount(amount);
+		long balance;
+		long sequence;
+		log.lock();
+		try {
+			checkNotFailed();
+			balance = balances.tryWithdraw(id, amount);
+			if (balance == INSUFFICIENT_FUNDS) {
+				return balance;
+			}
+			sequence = log.append(ADD, id, -amount);
+		} finally {
+			log.unlock();
+		}
+		sync(sequence);
+		return balance;
+	}
+
+	private long add(int id, long delta) {
+		checkId(id);
+		long balance;
+		long sequence;
+		log.lock();
+		try {
+			checkNotFailed();
+			balance = balances.addAndGet(id, delta);
+			sequence = log.append(ADD, id, delta);
+		} finally {
+			log.unlock();
+		}
+		sync(sequence);
+		return balance;
+	}
+
+	private void checkNotFailed() {
+		try {
+			log.checkNotFailed();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void sync(long sequence) {
+		try {
+			log.sync(sequence);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		long every = snapshotEvery;
+		if (every > 0 && sequence - log.segmentStart() >= every && snapshotScheduled.compareAndSet(false, true)) {
+			snapshotter.execute(() -> {
+				try {
+					snapshot();
+					snapshotFailure = null;
+				} catch (IOException e) {
+					snapshotFailure = e;
+				} finally {
+					snapshotScheduled.set(false);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Writes all balances to a new snapshot and deletes the log segments it makes redundant. Changes are held
+	 * up while the balances are copied into the mapped file; the log and the snapshot are forced after that.
+	 */
+	public void snapshot() throws IOException {
+		synchronized (snapshotLock) {
+			Path tmp = directory.resolve(SNAPSHOT_TMP);
+			Files.deleteIfExists(tmp);
+			try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+					StandardOpenOption.WRITE)) {
+				List<MappedByteBuffer> chunks = new ArrayList<MappedByteBuffer>();
+				long sequence;
+				int count;
+				log.lock();
+				try {
+					sequence = log.roll();
+					count = size;
+					for (long start = 0; start < count; start += CHUNK_LONGS) {
+						int length = (int) Math.min(CHUNK_LONGS, count - start);
+						MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + start * 8, length * 8L);
+						LongBuffer longs = chunk.asLongBuffer();
+						for (int i = 0; i < length; i++) {
+							longs.put(balances.get((int) (start + i)));
+						}
+						chunks.add(chunk);
+					}
+				} finally {
+					log.unlock();
+				}
+				// the old segment is forced by the next sync; do it now rather than wait for a writer
+				log.sync(sequence);
+				CRC32 crc = new CRC32();
+				for (int i = 0; i < chunks.size(); i++) {
+					MappedByteBuffer chunk = chunks.set(i, null);
+					crc.update(chunk.duplicate());
+					chunk.force();
+					unmap(chunk);
+				}
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putLong(sequence).putInt(count).putInt((int) crc.getValue());
+				header.flip();
+				while (header.hasRemaining()) {
+					channel.write(header, header.position());
+				}
+				channel.force(true);
+			}
+			Files.move(tmp, directory.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			WriteAheadLog.forceDirectory(directory);
+			log.deleteOlderSegments();
+		}
+	}
+
+	/**
+	 * @return sequence number the snapshot covers, 0 without a snapshot
+	 */
+	private long loadSnapshot() throws IOException {
+		Path file = directory.resolve(SNAPSHOT);
+		if (!Files.exists(file)) {
+			return 0;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining()) {
+				if (channel.read(header, header.position()) < 0) {
+					throw new IOException("truncated snapshot " + file);
+				}
+			}
+			header.flip();
+			if (header.getInt() != MAGIC) {
+				throw new IOException("not a snapshot: " + file);
+			}
+			long sequence = header.getLong();
+			int count = header.getInt();
+			int expectedCrc = header.getInt();
+			if (channel.size() != HEADER_SIZE + count * 8L) {
+				throw new IOException("truncated snapshot " + file);
+			}
+			balances.ensureCapacity(count);
+			CRC32 crc = new CRC32();
+			for (long start = 0; start < count; start += CHUNK_LONGS) {
+				int length = (int) Math.min(CHUNK_LONGS, count - start);
+				MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + start * 8, length * 8L);
+				crc.update(chunk.duplicate());
+				LongBuffer longs = chunk.asLongBuffer();
+				for (int i = 0; i < length; i++) {
+					balances.set((int) (start + i), longs.get());
+				}
+				unmap(chunk);
+			}
+			if ((int) crc.getValue() != expectedCrc) {
+				throw new IOException("corrupt snapshot " + file);
+			}
+			size = count;
+			return sequence;
+		}
+	}
+
+	/**
+	 * Releases a mapping now instead of whenever the buffer is collected. Java has no public API for this, so the
+	 * JDK's own cleaner is called reflectively; where that is not possible the mapping is left to the GC. The
+	 * buffer and its views must not be touched afterwards.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			try {
+				// Java 9 and later
+				Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+				Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			} catch (NoSuchMethodException e) {
+				// Java 8
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// left to the GC
+		}
+	}
+
+	/**
+	 * Makes the rename itself durable where the platform allows syncing a directory.
+	 */
+	private int checkId(int id) {
+		if (id < 0 || id >= size) {
+			throw new IllegalArgumentException("unknown account id " + id);
+		}
+		return id;
+	}
+
+	/**
+	 * Waits for a running snapshot and makes every change durable. Further calls fail.
+	 */
+	@Override
+	public void close() throws IOException {
+		snapshotter.shutdown();
+		try {
+			snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		log.close();
+	}
+}
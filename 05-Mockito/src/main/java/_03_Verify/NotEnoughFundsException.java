@@ -1,6 +1,8 @@
 package _03_Verify;
 
-public class NotEnoughFundsException extends Exception {
+import common.BusinessException;
+
+public class NotEnoughFundsException extends BusinessException {
 
 	/**
 	 * 
@@ -0,0 +1,370 @@
+package _03_Verify;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of fixed-size records in segment files named after their first sequence number.
+ * <p>
+ * {@link #append(byte, int, long)} only copies a record into the pending buffer. Callers that change state
+ * hold {@link #lock()} across the change and its append, so the log order is the order the changes were
+ * applied in. {@link #sync(long)} makes a record
+ * durable with group commit: the first caller to find no write in progress becomes the leader and writes and
+ * forces everything appended so far, while the callers arriving meanwhile wait and are covered by the same
+ * or the next force. One fsync thus serves every concurrent caller instead of one each.
+ * <p>
+ * Each record carries its sequence number and a CRC32, so recovery stops cleanly at a torn last write.
+ */
+final class WriteAheadLog implements Closeable {
+
+	interface RecordHandler {
+		void apply(byte type, int id, long value);
+	}
+
+	// type, sequence, id, value, crc
+	static final int RECORD_SIZE = 1 + 8 + 4 + 8 + 4;
+
+	private static final String SEGMENT_PREFIX = "wal-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final int INITIAL_BUFFER_RECORDS = 4096;
+
+	private final Path directory;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition flushed = lock.newCondition();
+	private final CRC32 crc = new CRC32();
+	private final byte[] record = new byte[RECORD_SIZE];
+	private final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+
+	private FileChannel channel;
+	private Path segment;
+	private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_RECORDS * RECORD_SIZE);
+	private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_RECORDS * RECORD_SIZE);
+	private long nextSequence;
+	private long durableSequence;
+	private volatile long segmentStart;
+	private boolean flushing;
+	// rolled segment whose records are written but not yet forced
+	private FileChannel rolled;
+	private volatile IOException failure;
+	private long syncs;
+
+	/**
+	 * Opens a new segment after the records already in the directory.
+	 *
+	 * @param lastSequence last sequence number already used, by the log or the snapshot
+	 */
+	WriteAheadLog(Path directory, long lastSequence) throws IOException {
+		this.directory = directory;
+		this.nextSequence = lastSequence + 1;
+		this.durableSequence = lastSequence;
+		openSegment();
+	}
+
+	/**
+	 * Replays the records after afterSequence from every segment in the directory, in order. A torn or
+	 * corrupt record ends the log: its segment is cut back to the valid prefix and the segments after it are
+	 * deleted. That loses nothing acknowledged, because a sync forces a rolled segment before it writes to the
+	 * next one, so nothing after an unforced tail was ever durable.
+	 *
+	 * @return last sequence number found, or afterSequence if there is none after it
+	 */
+	static long replay(Path directory, long afterSequence, RecordHandler handler) throws IOException {
+		List<Path> segments = segments(directory);
+		long last = afterSequence;
+		CRC32 crc = new CRC32();
+		byte[] record = new byte[RECORD_SIZE];
+		ByteBuffer buffer = ByteBuffer.wrap(record);
+		for (int s = 0; s < segments.size(); s++) {
+			Path segment = segments.get(s);
+			long valid = 0;
+			boolean torn = false;
+			try (InputStream file = Files.newInputStream(segment);
+					DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+				while (true) {
+					try {
+						in.readFully(record);
+					} catch (EOFException e) {
+						torn = valid != Files.size(segment);
+						break;
+					}
+					crc.reset();
+					crc.update(record, 0, RECORD_SIZE - 4);
+					buffer.clear();
+					byte type = buffer.get();
+					long sequence = buffer.getLong();
+					int id = buffer.getInt();
+					long value = buffer.getLong();
+					if ((int) crc.getValue() != buffer.getInt()) {
+						torn = true;
+						break;
+					}
+					if (sequence > afterSequence) {
+						handler.apply(type, id, value);
+						last = sequence;
+					}
+					valid += RECORD_SIZE;
+				}
+			}
+			if (torn) {
+				try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+					channel.truncate(valid);
+					channel.force(true);
+				}
+				if (s < segments.size() - 1) {
+					for (Path later : segments.subList(s + 1, segments.size())) {
+						Files.delete(later);
+					}
+					// or they come back after a crash and are replayed behind the gap
+					forceDirectory(directory);
+				}
+				break;
+			}
+		}
+		return last;
+	}
+
+	static void forceDirectory(Path directory) {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			// not supported on this platform, the change is durable once the file system commits it
+		}
+	}
+
+	private static List<Path> segments(Path directory) throws IOException {
+		List<Path> segments = new ArrayList<Path>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path file : files) {
+				segments.add(file);
+			}
+		}
+		// names hold zero-padded start sequences, so they sort in log order
+		Collections.sort(segments);
+		return segments;
+	}
+
+	private void openSegment() throws IOException {
+		segmentStart = nextSequence;
+		segment = directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, segmentStart, SEGMENT_SUFFIX));
+		channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Excludes appends, syncs taking over as leader and rolls; may be held across a change and its append.
+	 */
+	void lock() {
+		lock.lock();
+	}
+
+	void unlock() {
+		lock.unlock();
+	}
+
+	/**
+	 * @throws IOException if an earlier write failed; nothing may be changed or read as durable after that
+	 */
+	void checkNotFailed() throws IOException {
+		IOException current = failure;
+		if (current != null) {
+			throw new IOException("write-ahead log failed", current);
+		}
+	}
+
+	/**
+	 * @return the record's sequence number, to pass to {@link #sync(long)}
+	 */
+	long append(byte type, int id, long value) {
+		lock.lock();
+		try {
+			long sequence = nextSequence++;
+			recordBuffer.clear();
+			recordBuffer.put(type).putLong(sequence).putInt(id).putLong(value);
+			crc.reset();
+			crc.update(record, 0, RECORD_SIZE - 4);
+			recordBuffer.putInt((int) crc.getValue());
+			if (pending.remaining() < RECORD_SIZE) {
+				// the leader is still writing the other buffer, grow instead of waiting for it
+				ByteBuffer grown = ByteBuffer.allocate(pending.capacity() * 2);
+				pending.flip();
+				grown.put(pending);
+				pending = grown;
+			}
+			pending.put(record);
+			return sequence;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns once the record with this sequence number and all before it are on disk.
+	 *
+	 * @throws IOException if writing failed, now or in an earlier sync; the log accepts no further syncs then
+	 */
+	void sync(long sequence) throws IOException {
+		lock.lock();
+		try {
+			while (durableSequence < sequence) {
+				checkNotFailed();
+				if (flushing) {
+					flushed.awaitUninterruptibly();
+					continue;
+				}
+				flush();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes and forces the pending buffer as leader; called and returns with the lock held, but releases it
+	 * around the I/O so appends continue into the other buffer.
+	 */
+	private void flush() throws IOException {
+		flushing = true;
+		ByteBuffer batch = pending;
+		pending = spare;
+		spare = null;
+		long last = nextSequence - 1;
+		FileChannel target = channel;
+		FileChannel previous = rolled;
+		rolled = null;
+		IOException error = null;
+		lock.unlock();
+		try {
+			if (previous != null) {
+				previous.force(false);
+				previous.close();
+			}
+			batch.flip();
+			while (batch.hasRemaining()) {
+				target.write(batch);
+			}
+			target.force(false);
+		} catch (IOException e) {
+			error = e;
+		} finally {
+			lock.lock();
+		}
+		batch.clear();
+		spare = batch;
+		flushing = false;
+		syncs++;
+		if (error == null) {
+			durableSequence = last;
+		} else {
+			failure = error;
+		}
+		flushed.signalAll();
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Starts a new segment. Records appended so far are written to the old segment but not forced; the next
+	 * {@link #sync(long)} forces it, so the caller can hold {@link #lock()} here without waiting for a disk.
+	 *
+	 * @return the last sequence number in the previous segments
+	 */
+	long roll() throws IOException {
+		lock.lock();
+		try {
+			while (flushing) {
+				flushed.awaitUninterruptibly();
+			}
+			checkNotFailed();
+			try {
+				if (rolled != null) {
+					// rolled twice without a sync in between
+					rolled.force(false);
+					rolled.close();
+					rolled = null;
+				}
+				pending.flip();
+				while (pending.hasRemaining()) {
+					channel.write(pending);
+				}
+				pending.clear();
+				rolled = channel;
+				openSegment();
+			} catch (IOException e) {
+				failure = e;
+				throw e;
+			}
+			return nextSequence - 1;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Deletes every segment but the current one; only safe once a snapshot covers them.
+	 */
+	void deleteOlderSegments() throws IOException {
+		Path current;
+		lock.lock();
+		try {
+			current = segment;
+		} finally {
+			lock.unlock();
+		}
+		for (Path old : segments(directory)) {
+			if (old.compareTo(current) < 0) {
+				Files.delete(old);
+			}
+		}
+	}
+
+	/**
+	 * @return first sequence number of the current segment
+	 */
+	long segmentStart() {
+		return segmentStart;
+	}
+
+	/**
+	 * @return number of forces so far
+	 */
+	long syncCount() {
+		lock.lock();
+		try {
+			return syncs;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			while (flushing) {
+				flushed.awaitUninterruptibly();
+			}
+			if (failure == null && (pending.position() > 0 || rolled != null)) {
+				flush();
+			}
+			channel.close();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
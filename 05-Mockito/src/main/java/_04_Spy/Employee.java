@@ -3,6 +3,9 @@ package _04_Spy;
 import java.util.ArrayList;
 import java.util.List;
 
+import common.Trace;
+import common.TraceEvent;
+
 public class Employee {
 	private String firstName;
 	private String lastName;
@@ -38,12 +41,16 @@ public class Employee {
 	}
 
 	public final void finalMoveTo(EngineerAware engineerAware) {
-		System.out.println("Employee moves from " + this.engineerAware.getDesignation() + " to " + engineerAware.getDesignation());
+		if (Trace.isEnabled()) {
+			Trace.trace(TraceEvent.EMPLOYEE_MOVED, this.engineerAware.getDesignation(), engineerAware.getDesignation());
+		}
 		this.engineerAware = engineerAware;
 	}
 	
 	public void moveTo(EngineerAware engineerAware) {
-		System.out.println("Employee moves from " + this.engineerAware.getDesignation() + " to " + engineerAware.getDesignation());
+		if (Trace.isEnabled()) {
+			Trace.trace(TraceEvent.EMPLOYEE_MOVED, this.engineerAware.getDesignation(), engineerAware.getDesignation());
+		}
 		this.engineerAware = engineerAware;
 	}
 	
@@ -0,0 +1,224 @@
+package _10_Mock;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Element-wise operations over whole arrays: result[i] = n1[i] op n2[i].
+ * <p>
+ * The loops are kept to the plain counted form that HotSpot's superword pass turns into SIMD code, so
+ * add, subtract and multiply run several lanes per instruction on long and double arrays. Long division
+ * has no SIMD form and stays scalar. The result array may be one of the operands.
+ */
+public final class BatchArithmetic {
+
+	private BatchArithmetic() {
+	}
+
+	public static long[] add(long[] n1, long[] n2, long[] result) {
+		int length = checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = n1[i] + n2[i];
+		}
+		return result;
+	}
+
+	public static long[] subtract(long[] n1, long[] n2, long[] result) {
+		int length = checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = n1[i] - n2[i];
+		}
+		return result;
+	}
+
+	public static long[] multiply(long[] n1, long[] n2, long[] result) {
+		int length = checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = n1[i] * n2[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @throws ArithmeticException at the first zero divisor; the rows before it are already written
+	 */
+	public static long[] divide(long[] n1, long[] n2, long[] result) throws ArithmeticException {
+		int length = checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = n1[i] / n2[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Division that never throws: a row with a zero divisor gets result 0 and its bit set in errors, bit
+	 * (row &amp; 63) of errors[row &gt;&gt;&gt; 6]. The loop has no branch on the divisor, so its speed does
+	 * not depend on how many rows fail.
+	 *
+	 * @param errors at least {@link #errorWords(int)} of the row count; the words covering the rows are overwritten
+	 * @return number of failed rows
+	 */
+	public static int divide(long[] n1, long[] n2, long[] result, long[] errors) {
+		int length = checkLength(n1.length, n2.length, result.length);
+		if (errors.length < errorWords(length)) {
+			throw new IllegalArgumentException(errors.length + " error words for " + length + " rows");
+		}
+		int failed = 0;
+		long word = 0;
+		for (int i = 0; i < length; i++) {
+			long divisor = n2[i];
+			long zero = divisor == 0 ? 1 : 0;
+			// divide by 1 instead of 0, then mask the quotient away
+			result[i] = n1[i] / (divisor | zero) & (zero - 1);
+			word |= zero << i;
+			if ((i & 63) == 63) {
+				errors[i >>> 6] = word;
+				failed += Long.bitCount(word);
+				word = 0;
+			}
+		}
+		if ((length & 63) != 0) {
+			errors[length >>> 6] = word;
+			failed += Long.bitCount(word);
+		}
+		return failed;
+	}
+
+	/**
+	 * @return number of longs needed for the error bitmap of that many rows
+	 */
+	public static int errorWords(int rows) {
+		return (rows + 63) >>> 6;
+	}
+
+	/**
+	 * @return whether row failed according to an error bitmap
+	 */
+	public static boolean failed(long[] errors, int row) {
+		return (errors[row >>> 6] & 1L << row) != 0;
+	}
+
+	public static double[] add(double[] n1, double[] n2, double[] result) {
+		int length = checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = n1[i] + n2[i];
+		}
+		return result;
+	}
+
+	public static double[] subtract(double[] n1, double[] n2, double[] result) {
+		int length = checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = n1[i] - n2[i];
+		}
+		return result;
+	}
+
+	public static double[] multiply(double[] n1, double[] n2, double[] result) {
+		int length = checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = n1[i] * n2[i];
+		}
+		return result;
+	}
+
+	public static double[] divide(double[] n1, double[] n2, double[] result) {
+		int length = checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = n1[i] / n2[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Works on the remaining elements of each buffer and leaves all positions unchanged. Heap buffers take the
+	 * array loop; direct buffers are read and written in place, so off-heap columns are never copied.
+	 */
+	public static DoubleBuffer add(DoubleBuffer n1, DoubleBuffer n2, DoubleBuffer result) {
+		return apply(Operation.ADD, n1, n2, result);
+	}
+
+	public static DoubleBuffer subtract(DoubleBuffer n1, DoubleBuffer n2, DoubleBuffer result) {
+		return apply(Operation.SUBTRACT, n1, n2, result);
+	}
+
+	public static DoubleBuffer multiply(DoubleBuffer n1, DoubleBuffer n2, DoubleBuffer result) {
+		return apply(Operation.MULTIPLY, n1, n2, result);
+	}
+
+	public static DoubleBuffer divide(DoubleBuffer n1, DoubleBuffer n2, DoubleBuffer result) {
+		return apply(Operation.DIVIDE, n1, n2, result);
+	}
+
+	private enum Operation {
+		ADD, SUBTRACT, MULTIPLY, DIVIDE
+	}
+
+	private static DoubleBuffer apply(Operation operation, DoubleBuffer n1, DoubleBuffer n2, DoubleBuffer result) {
+		int length = checkLength(n1.remaining(), n2.remaining(), result.remaining());
+		if (n1.hasArray() && n2.hasArray() && result.hasArray()) {
+			applyArrays(operation, n1.array(), n1.arrayOffset() + n1.position(), n2.array(), n2.arrayOffset() + n2.position(),
+					result.array(), result.arrayOffset() + result.position(), length);
+			return result;
+		}
+		int p1 = n1.position();
+		int p2 = n2.position();
+		int p = result.position();
+		// one loop per operation, a switch inside the loop would keep it from being unrolled
+		switch (operation) {
+		case ADD:
+			for (int i = 0; i < length; i++) {
+				result.put(p + i, n1.get(p1 + i) + n2.get(p2 + i));
+			}
+			break;
+		case SUBTRACT:
+			for (int i = 0; i < length; i++) {
+				result.put(p + i, n1.get(p1 + i) - n2.get(p2 + i));
+			}
+			break;
+		case MULTIPLY:
+			for (int i = 0; i < length; i++) {
+				result.put(p + i, n1.get(p1 + i) * n2.get(p2 + i));
+			}
+			break;
+		default:
+			for (int i = 0; i < length; i++) {
+				result.put(p + i, n1.get(p1 + i) / n2.get(p2 + i));
+			}
+			break;
+		}
+		return result;
+	}
+
+	private static void applyArrays(Operation operation, double[] n1, int o1, double[] n2, int o2, double[] result, int o,
+			int length) {
+		switch (operation) {
+		case ADD:
+			for (int i = 0; i < length; i++) {
+				result[o + i] = n1[o1 + i] + n2[o2 + i];
+			}
+			break;
+		case SUBTRACT:
+			for (int i = 0; i < length; i++) {
+				result[o + i] = n1[o1 + i] - n2[o2 + i];
+			}
+			break;
+		case MULTIPLY:
+			for (int i = 0; i < length; i++) {
+				result[o + i] = n1[o1 + i] * n2[o2 + i];
+			}
+			break;
+		default:
+			for (int i = 0; i < length; i++) {
+				result[o + i] = n1[o1 + i] / n2[o2 + i];
+			}
+			break;
+		}
+	}
+
+	static int checkLength(int n1, int n2, int result) {
+		if (n1 != n2 || n1 > result) {
+			throw new IllegalArgumentException("operands of length " + n1 + " and " + n2 + ", result of length " + result);
+		}
+		return n1;
+	}
+}
@@ -1,11 +1,16 @@
 package _10_Mock;
 
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
 public class CalculatorApplication {
 
 	private Adder adder;
 	private Subtracter subtracter;
 	private Multiplier multiplier;
 	private Divisor divisor;
+	private LongArithmetic longArithmetic;
+	private DoubleArithmetic doubleArithmetic;
 	
 	public CalculatorApplication(Adder adder, Subtracter subtracter,
 			Multiplier multiplier, Divisor divisor) {
@@ -13,6 +18,22 @@ public class CalculatorApplication {
 		this.subtracter = subtracter;
 		this.multiplier = multiplier;
 		this.divisor = divisor;
+		ObjectArithmetic objectArithmetic = new ObjectArithmetic(adder, subtracter, multiplier, divisor);
+		this.longArithmetic = objectArithmetic;
+		this.doubleArithmetic = objectArithmetic;
+	}
+
+	/**
+	 * Primitive operations without boxing; the Object-typed methods are served from them.
+	 */
+	public CalculatorApplication(LongArithmetic longArithmetic, DoubleArithmetic doubleArithmetic) {
+		NumberArithmetic numberArithmetic = new NumberArithmetic(longArithmetic, doubleArithmetic);
+		this.adder = numberArithmetic;
+		this.subtracter = numberArithmetic;
+		this.multiplier = numberArithmetic;
+		this.divisor = numberArithmetic;
+		this.longArithmetic = longArithmetic;
+		this.doubleArithmetic = doubleArithmetic;
 	}
 	
 	public Object add(Object n1, Object n2) {
@@ -38,4 +59,212 @@ public class CalculatorApplication {
 		
 		return result;
 	}
+
+	public long addLong(long n1, long n2) {
+		return this.longArithmetic.add(n1, n2);
+	}
+
+	public long subtractLong(long n1, long n2) {
+		return this.longArithmetic.subtract(n1, n2);
+	}
+
+	public long multiplyLong(long n1, long n2) {
+		return this.longArithmetic.multiply(n1, n2);
+	}
+
+	public long divideLong(long n1, long n2) throws ArithmeticException {
+		return this.longArithmetic.divide(n1, n2);
+	}
+
+	public double addDouble(double n1, double n2) {
+		return this.doubleArithmetic.add(n1, n2);
+	}
+
+	public double subtractDouble(double n1, double n2) {
+		return this.doubleArithmetic.subtract(n1, n2);
+	}
+
+	public double multiplyDouble(double n1, double n2) {
+		return this.doubleArithmetic.multiply(n1, n2);
+	}
+
+	public double divideDouble(double n1, double n2) {
+		return this.doubleArithmetic.divide(n1, n2);
+	}
+
+	/**
+	 * Compiles a formula once for evaluation over many rows, using this calculator's double operations.
+	 */
+	public CompiledExpression compile(Expression expression) {
+		return expression.compile(this.doubleArithmetic);
+	}
+
+	/*
+	 * Batch operations, result[i] = n1[i] op n2[i]. With PrimitiveArithmetic they run the SIMD-friendly loops
+	 * of BatchArithmetic; any other implementation is called once per element.
+	 */
+
+	public long[] addAll(long[] n1, long[] n2, long[] result) {
+		if (this.longArithmetic == PrimitiveArithmetic.INSTANCE) {
+			return BatchArithmetic.add(n1, n2, result);
+		}
+		int length = BatchArithmetic.checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = this.longArithmetic.add(n1[i], n2[i]);
+		}
+		return result;
+	}
+
+	public long[] subtractAll(long[] n1, long[] n2, long[] result) {
+		if (this.longArithmetic == PrimitiveArithmetic.INSTANCE) {
+			return BatchArithmetic.subtract(n1, n2, result);
+		}
+		int length = BatchArithmetic.checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = this.longArithmetic.subtract(n1[i], n2[i]);
+		}
+		return result;
+	}
+
+	public long[] multiplyAll(long[] n1, long[] n2, long[] result) {
+		if (this.longArithmetic == PrimitiveArithmetic.INSTANCE) {
+			return BatchArithmetic.multiply(n1, n2, result);
+		}
+		int length = BatchArithmetic.checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = this.longArithmetic.multiply(n1[i], n2[i]);
+		}
+		return result;
+	}
+
+	public long[] divideAll(long[] n1, long[] n2, long[] result) throws ArithmeticException {
+		if (this.longArithmetic == PrimitiveArithmetic.INSTANCE) {
+			return BatchArithmetic.divide(n1, n2, result);
+		}
+		int length = BatchArithmetic.checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = this.longArithmetic.divide(n1[i], n2[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Same as {@link #divideAll(long[], long[], long[])} without exceptions: rows with a zero divisor get 0 and are
+	 * flagged in the errors bitmap, see {@link BatchArithmetic#divide(long[], long[], long[], long[])}.
+	 *
+	 * @return number of failed rows
+	 */
+	public int divideAll(long[] n1, long[] n2, long[] result, long[] errors) {
+		if (this.longArithmetic == PrimitiveArithmetic.INSTANCE) {
+			return BatchArithmetic.divide(n1, n2, result, errors);
+		}
+		int length = BatchArithmetic.checkLength(n1.length, n2.length, result.length);
+		if (errors.length < BatchArithmetic.errorWords(length)) {
+			throw new IllegalArgumentException(errors.length + " error words for " + length + " rows");
+		}
+		Arrays.fill(errors, 0, BatchArithmetic.errorWords(length), 0);
+		int failed = 0;
+		for (int i = 0; i < length; i++) {
+			if (n2[i] == 0) {
+				result[i] = 0;
+				errors[i >>> 6] |= 1L << i;
+				failed++;
+			} else {
+				result[i] = this.longArithmetic.divide(n1[i], n2[i]);
+			}
+		}
+		return failed;
+	}
+
+	public double[] addAll(double[] n1, double[] n2, double[] result) {
+		if (this.doubleArithmetic == PrimitiveArithmetic.INSTANCE) {
+			return BatchArithmetic.add(n1, n2, result);
+		}
+		int length = BatchArithmetic.checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = this.doubleArithmetic.add(n1[i], n2[i]);
+		}
+		return result;
+	}
+
+	public double[] subtractAll(double[] n1, double[] n2, double[] result) {
+		if (this.doubleArithmetic == PrimitiveArithmetic.INSTANCE) {
+			return BatchArithmetic.subtract(n1, n2, result);
+		}
+		int length = BatchArithmetic.checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = this.doubleArithmetic.subtract(n1[i], n2[i]);
+		}
+		return result;
+	}
+
+	public double[] multiplyAll(double[] n1, double[] n2, double[] result) {
+		if (this.doubleArithmetic == PrimitiveArithmetic.INSTANCE) {
+			return BatchArithmetic.multiply(n1, n2, result);
+		}
+		int length = BatchArithmetic.checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = this.doubleArithmetic.multiply(n1[i], n2[i]);
+		}
+		return result;
+	}
+
+	public double[] divideAll(double[] n1, double[] n2, double[] result) {
+		if (this.doubleArithmetic == PrimitiveArithmetic.INSTANCE) {
+			return BatchArithmetic.divide(n1, n2, result);
+		}
+		int length = BatchArithmetic.checkLength(n1.length, n2.length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = this.doubleArithmetic.divide(n1[i], n2[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Works on the remaining elements and leaves the buffer positions unchanged.
+	 */
+	public DoubleBuffer addAll(DoubleBuffer n1, DoubleBuffer n2, DoubleBuffer result) {
+		if (this.doubleArithmetic == PrimitiveArithmetic.INSTANCE) {
+			return BatchArithmetic.add(n1, n2, result);
+		}
+		int length = BatchArithmetic.checkLength(n1.remaining(), n2.remaining(), result.remaining());
+		for (int i = 0; i < length; i++) {
+			result.put(result.position() + i, this.doubleArithmetic.add(n1.get(n1.position() + i), n2.get(n2.position() + i)));
+		}
+		return result;
+	}
+
+	public DoubleBuffer subtractAll(DoubleBuffer n1, DoubleBuffer n2, DoubleBuffer result) {
+		if (this.doubleArithmetic == PrimitiveArithmetic.INSTANCE) {
+			return BatchArithmetic.subtract(n1, n2, result);
+		}
+		int length = BatchArithmetic.checkLength(n1.remaining(), n2.remaining(), result.remaining());
+		for (int i = 0; i < length; i++) {
+			result.put(result.position() + i, this.doubleArithmetic.subtract(n1.get(n1.position() + i), n2.get(n2.position() + i)));
+		}
+		return result;
+	}
+
+	public DoubleBuffer multiplyAll(DoubleBuffer n1, DoubleBuffer n2, DoubleBuffer result) {
+		if (this.doubleArithmetic == PrimitiveArithmetic.INSTANCE) {
+			return BatchArithmetic.multiply(n1, n2, result);
+		}
+		int length = BatchArithmetic.checkLength(n1.remaining(), n2.remaining(), result.remaining());
+		for (int i = 0; i < length; i++) {
+			result.put(result.position() + i, this.doubleArithmetic.multiply(n1.get(n1.position() + i), n2.get(n2.position() + i)));
+		}
+		return result;
+	}
+
+	public DoubleBuffer divideAll(DoubleBuffer n1, DoubleBuffer n2, DoubleBuffer result) {
+		if (this.doubleArithmetic == PrimitiveArithmetic.INSTANCE) {
+			return BatchArithmetic.divide(n1, n2, result);
+		}
+		int length = BatchArithmetic.checkLength(n1.remaining(), n2.remaining(), result.remaining());
+		for (int i = 0; i < length; i++) {
+			result.put(result.position() + i, this.doubleArithmetic.divide(n1.get(n1.position() + i), n2.get(n2.position() + i)));
+		}
+		return result;
+	}
+
 }
@@ -0,0 +1,157 @@
+package _10_Mock;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import common.LatencyHistogram;
+
+/**
+ * Drives a {@link CalculatorServer} over loopback and reports requests per second and latency percentiles.
+ * <p>
+ * Each connection runs on its own thread and keeps sending windows of pipelined requests, waiting for the
+ * whole window to be answered before sending the next. The latency recorded for each request is the round
+ * trip of its window, an upper bound of the true per-request latency.
+ * <p>
+ * Usage: {@code CalculatorLoadGenerator [connections] [pipelineDepth] [seconds] [port]}; without a port a
+ * server with {@link PrimitiveArithmetic} is started in the same process.
+ */
+public class CalculatorLoadGenerator {
+
+	public static final class Result {
+		private final long requests;
+		private final long nanos;
+		private final LatencyHistogram latencies;
+
+		Result(long requests, long nanos, LatencyHistogram latencies) {
+			this.requests = requests;
+			this.nanos = nanos;
+			this.latencies = latencies;
+		}
+
+		public long getRequests() {
+			return requests;
+		}
+
+		public double getRequestsPerSecond() {
+			return requests * 1e9 / nanos;
+		}
+
+		/**
+		 * @return latency in nanoseconds below which the given share of requests completed, 0 without requests
+		 */
+		public long getLatencyPercentile(double percentile) {
+			return latencies.getPercentile(percentile);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d requests, %.0f req/s, p50 %d us, p99 %d us", requests, getRequestsPerSecond(),
+					TimeUnit.NANOSECONDS.toMicros(getLatencyPercentile(50)), TimeUnit.NANOSECONDS.toMicros(getLatencyPercentile(99)));
+		}
+	}
+
+	public static Result run(final InetSocketAddress address, int connections, final int pipelineDepth, long durationMillis)
+			throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+		final LatencyHistogram[] latencies = new LatencyHistogram[connections];
+		final long[] requests = new long[connections];
+		final Exception[] failures = new Exception[connections];
+		Thread[] clients = new Thread[connections];
+		long start = System.nanoTime();
+		for (int c = 0; c < connections; c++) {
+			final int client = c;
+			clients[c] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						latencies[client] = drive(address, pipelineDepth, deadline, requests, client);
+					} catch (IOException | RuntimeException e) {
+						failures[client] = e;
+					}
+				}
+			}, "CalculatorLoadGenerator-" + c);
+			clients[c].start();
+		}
+		for (Thread client : clients) {
+			client.join();
+		}
+		long nanos = System.nanoTime() - start;
+		for (Exception failure : failures) {
+			if (failure != null) {
+				throw new IllegalStateException("client failed", failure);
+			}
+		}
+
+		long total = 0;
+		LatencyHistogram merged = new LatencyHistogram();
+		for (int c = 0; c < connections; c++) {
+			total += requests[c];
+			merged.add(latencies[c]);
+		}
+		return new Result(total, nanos, merged);
+	}
+
+	/**
+	 * @return latencies in nanoseconds, each window's round trip counted once per request in it
+	 */
+	private static LatencyHistogram drive(InetSocketAddress address, int pipelineDepth, long deadline, long[] requests, int client)
+			throws IOException {
+		ByteBuffer window = ByteBuffer.allocateDirect(pipelineDepth * CalculatorProtocol.REQUEST_SIZE);
+		for (int i = 0; i < pipelineDepth; i++) {
+			CalculatorProtocol.putRequest(window, (byte) (i % 8), (long) i, (long) i + 1);
+		}
+		ByteBuffer responses = ByteBuffer.allocateDirect(pipelineDepth * CalculatorProtocol.RESPONSE_SIZE);
+		LatencyHistogram latencies = new LatencyHistogram();
+		long count = 0;
+		try (SocketChannel channel = SocketChannel.open(address)) {
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			while (System.nanoTime() < deadline) {
+				long sent = System.nanoTime();
+				window.clear();
+				while (window.hasRemaining()) {
+					channel.write(window);
+				}
+				responses.clear();
+				while (responses.hasRemaining()) {
+					if (channel.read(responses) < 0) {
+						throw new EOFException("server closed the connection");
+					}
+				}
+				latencies.record(System.nanoTime() - sent, pipelineDepth);
+				count += pipelineDepth;
+			}
+		}
+		requests[client] = count;
+		return latencies;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int connections = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int pipelineDepth = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		CalculatorServer server = null;
+		int port;
+		if (args.length > 3) {
+			port = Integer.parseInt(args[3]);
+		} else {
+			server = new CalculatorServer(new CalculatorApplication(PrimitiveArithmetic.INSTANCE, PrimitiveArithmetic.INSTANCE),
+					new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			port = server.getPort();
+		}
+		try {
+			Result result = run(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), connections, pipelineDepth,
+					TimeUnit.SECONDS.toMillis(seconds));
+			System.out.println(connections + " connections, pipeline depth " + pipelineDepth + ": " + result);
+		} finally {
+			if (server != null) {
+				server.close();
+			}
+		}
+	}
+}
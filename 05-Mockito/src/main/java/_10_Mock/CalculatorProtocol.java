@@ -0,0 +1,88 @@
+package _10_Mock;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary protocol of {@link CalculatorServer}, big-endian throughout.
+ * <p>
+ * A request is {@value #REQUEST_SIZE} bytes: the operation code, then both operands as 8 bytes each, raw long
+ * bits for the double operations. A response is {@value #RESPONSE_SIZE} bytes: a status, then the result.
+ * Clients may send any number of requests without waiting; responses come back in request order.
+ */
+public final class CalculatorProtocol {
+
+	public static final int REQUEST_SIZE = 17;
+	public static final int RESPONSE_SIZE = 9;
+
+	public static final byte ADD_LONG = 0;
+	public static final byte SUBTRACT_LONG = 1;
+	public static final byte MULTIPLY_LONG = 2;
+	public static final byte DIVIDE_LONG = 3;
+	public static final byte ADD_DOUBLE = 4;
+	public static final byte SUBTRACT_DOUBLE = 5;
+	public static final byte MULTIPLY_DOUBLE = 6;
+	public static final byte DIVIDE_DOUBLE = 7;
+
+	public static final byte OK = 0;
+	/** Long division by zero, the result is 0. */
+	public static final byte DIVIDE_BY_ZERO = 1;
+	/** Unknown operation code, the result is 0. */
+	public static final byte UNKNOWN_OPERATION = 2;
+
+	private CalculatorProtocol() {
+	}
+
+	public static ByteBuffer putRequest(ByteBuffer buffer, byte operation, long n1, long n2) {
+		return buffer.put(operation).putLong(n1).putLong(n2);
+	}
+
+	public static ByteBuffer putRequest(ByteBuffer buffer, byte operation, double n1, double n2) {
+		return buffer.put(operation).putDouble(n1).putDouble(n2);
+	}
+
+	/**
+	 * Reads one request from in and writes its response to out; both need room for a full message.
+	 */
+	static void process(CalculatorApplication calculator, ByteBuffer in, ByteBuffer out) {
+		byte operation = in.get();
+		long n1 = in.getLong();
+		long n2 = in.getLong();
+		try {
+			switch (operation) {
+			case ADD_LONG:
+				out.put(OK).putLong(calculator.addLong(n1, n2));
+				break;
+			case SUBTRACT_LONG:
+				out.put(OK).putLong(calculator.subtractLong(n1, n2));
+				break;
+			case MULTIPLY_LONG:
+				out.put(OK).putLong(calculator.multiplyLong(n1, n2));
+				break;
+			case DIVIDE_LONG:
+				if (n2 == 0) {
+					out.put(DIVIDE_BY_ZERO).putLong(0);
+				} else {
+					out.put(OK).putLong(calculator.divideLong(n1, n2));
+				}
+				break;
+			case ADD_DOUBLE:
+				out.put(OK).putDouble(calculator.addDouble(Double.longBitsToDouble(n1), Double.longBitsToDouble(n2)));
+				break;
+			case SUBTRACT_DOUBLE:
+				out.put(OK).putDouble(calculator.subtractDouble(Double.longBitsToDouble(n1), Double.longBitsToDouble(n2)));
+				break;
+			case MULTIPLY_DOUBLE:
+				out.put(OK).putDouble(calculator.multiplyDouble(Double.longBitsToDouble(n1), Double.longBitsToDouble(n2)));
+				break;
+			case DIVIDE_DOUBLE:
+				out.put(OK).putDouble(calculator.divideDouble(Double.longBitsToDouble(n1), Double.longBitsToDouble(n2)));
+				break;
+			default:
+				out.put(UNKNOWN_OPERATION).putLong(0);
+				break;
+			}
+		} catch (ArithmeticException e) {
+			out.put(DIVIDE_BY_ZERO).putLong(0);
+		}
+	}
+}
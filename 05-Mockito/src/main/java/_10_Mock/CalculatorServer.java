@@ -0,0 +1,198 @@
+package _10_Mock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import common.Trace;
+import common.TraceEvent;
+
+/**
+ * Serves a {@link CalculatorApplication} over TCP with the {@link CalculatorProtocol}.
+ * <p>
+ * One selector thread handles every connection. Whatever complete requests a read brings in are answered
+ * together and the responses go out in one write, so a pipelining client costs about one system call per
+ * batch rather than per request. When a client stops reading, the server stops reading from it too until
+ * its pending responses are written. A failed accept, for example when the process is out of file
+ * descriptors, is traced and accepting pauses briefly instead of stopping the server.
+ */
+public class CalculatorServer implements Closeable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long ACCEPT_PAUSE_MILLIS = 100;
+
+	private final CalculatorApplication calculator;
+	private final ServerSocketChannel serverChannel;
+	private final Selector selector;
+	private final Thread selectorThread;
+	private volatile boolean running = true;
+	// selector thread only
+	private boolean acceptPaused;
+	private long acceptPausedUntil;
+
+	/**
+	 * Binds and starts serving right away; port 0 picks a free port, see {@link #getPort()}.
+	 */
+	public CalculatorServer(CalculatorApplication calculator, InetSocketAddress address) throws IOException {
+		this.calculator = calculator;
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.bind(address);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		this.selectorThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				serve();
+			}
+		}, "CalculatorServer-" + getPort());
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+	}
+
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	@Override
+	public void close() throws IOException {
+		running = false;
+		selector.wakeup();
+		try {
+			selectorThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static final class Connection {
+		final SocketChannel channel;
+		final SelectionKey key;
+		final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		Connection(SocketChannel channel, SelectionKey key) {
+			this.channel = channel;
+			this.key = key;
+		}
+	}
+
+	private void serve() {
+		try {
+			while (running) {
+				if (!acceptPaused) {
+					selector.select();
+				} else {
+					long remaining = acceptPausedUntil - System.nanoTime();
+					if (remaining > 0) {
+						selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+					}
+					if (System.nanoTime() - acceptPausedUntil >= 0) {
+						acceptPaused = false;
+						serverChannel.keyFor(selector).interestOps(SelectionKey.OP_ACCEPT);
+					}
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						try {
+							accept();
+						} catch (IOException e) {
+							// the listening socket still works, the error is usually temporary; stop selecting
+							// for accepts a moment so the pending connection does not spin the loop
+							Trace.trace(TraceEvent.ACCEPT_FAILED, ACCEPT_PAUSE_MILLIS, e);
+							key.interestOps(0);
+							acceptPaused = true;
+							acceptPausedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ACCEPT_PAUSE_MILLIS);
+						}
+						continue;
+					}
+					Connection connection = (Connection) key.attachment();
+					try {
+						service(connection, key.isReadable());
+					} catch (IOException e) {
+						close(connection.channel);
+					}
+				}
+			}
+		} catch (IOException e) {
+			// the selector itself failed, nothing left to serve
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				close(key.channel());
+			}
+			close(selector);
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+			key.attach(new Connection(channel, key));
+		} catch (IOException e) {
+			close(channel);
+			throw e;
+		}
+	}
+
+	private void service(Connection connection, boolean readable) throws IOException {
+		if (readable && connection.channel.read(connection.in) < 0) {
+			close(connection.channel);
+			return;
+		}
+		ByteBuffer in = connection.in;
+		ByteBuffer out = connection.out;
+		while (true) {
+			in.flip();
+			boolean pending = false;
+			while (in.remaining() >= CalculatorProtocol.REQUEST_SIZE) {
+				if (out.remaining() < CalculatorProtocol.RESPONSE_SIZE) {
+					pending = true;
+					break;
+				}
+				CalculatorProtocol.process(calculator, in, out);
+			}
+			in.compact();
+
+			out.flip();
+			connection.channel.write(out);
+			boolean drained = !out.hasRemaining();
+			out.compact();
+			if (!drained) {
+				connection.key.interestOps(SelectionKey.OP_WRITE);
+				return;
+			}
+			if (!pending) {
+				connection.key.interestOps(SelectionKey.OP_READ);
+				return;
+			}
+		}
+	}
+
+	private static void close(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			// closing anyway
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package _10_Mock;
+
+/**
+ * An {@link Expression} fused into one evaluator: each row is computed in a single pass down the composed
+ * functions, with every intermediate value kept in a local double and nothing allocated.
+ */
+public final class CompiledExpression {
+
+	interface RowFunction {
+		double apply(double[][] columns, int row);
+	}
+
+	private final RowFunction function;
+	private final int columnCount;
+
+	CompiledExpression(RowFunction function, int columnCount) {
+		this.function = function;
+		this.columnCount = columnCount;
+	}
+
+	/**
+	 * @return number of columns the evaluator reads, the highest column index used plus one
+	 */
+	public int getColumnCount() {
+		return columnCount;
+	}
+
+	/**
+	 * @param columns columns[c][row], at least {@link #getColumnCount()} of them
+	 */
+	public double evaluate(double[][] columns, int row) {
+		return function.apply(columns, row);
+	}
+
+	/**
+	 * Evaluates rows 0 to result.length - 1 into result.
+	 */
+	public double[] evaluate(double[][] columns, double[] result) {
+		if (columns.length < columnCount) {
+			throw new IllegalArgumentException(columns.length + " columns given, " + columnCount + " used");
+		}
+		for (int c = 0; c < columnCount; c++) {
+			if (columns[c].length < result.length) {
+				throw new IllegalArgumentException("column " + c + " has " + columns[c].length + " rows, " + result.length + " needed");
+			}
+		}
+		RowFunction function = this.function;
+		for (int row = 0; row < result.length; row++) {
+			result[row] = function.apply(columns, row);
+		}
+		return result;
+	}
+}
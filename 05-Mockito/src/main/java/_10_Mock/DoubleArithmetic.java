@@ -0,0 +1,16 @@
+package _10_Mock;
+
+/**
+ * The four operations on double operands, without boxing.
+ */
+public interface DoubleArithmetic {
+
+	public double add(double n1, double n2);
+
+	public double subtract(double n1, double n2);
+
+	public double multiply(double n1, double n2);
+
+	public double divide(double n1, double n2);
+
+}
@@ -0,0 +1,204 @@
+package _10_Mock;
+
+/**
+ * Formula over numbered double columns, built fluently and compiled once for evaluation over many rows:
+ * {@code column(0).add(column(1)).multiply(column(2)).divide(column(3))} is (a + b) * c / d.
+ * <p>
+ * Expressions are immutable, so subexpressions can be shared between formulas.
+ */
+public abstract class Expression {
+
+	enum Operation {
+		ADD, SUBTRACT, MULTIPLY, DIVIDE
+	}
+
+	Expression() {
+	}
+
+	public static Expression column(int index) {
+		if (index < 0) {
+			throw new IllegalArgumentException("negative column " + index);
+		}
+		return new Column(index);
+	}
+
+	public static Expression constant(double value) {
+		return new Constant(value);
+	}
+
+	public Expression add(Expression other) {
+		return new Binary(Operation.ADD, this, other);
+	}
+
+	public Expression subtract(Expression other) {
+		return new Binary(Operation.SUBTRACT, this, other);
+	}
+
+	public Expression multiply(Expression other) {
+		return new Binary(Operation.MULTIPLY, this, other);
+	}
+
+	public Expression divide(Expression other) {
+		return new Binary(Operation.DIVIDE, this, other);
+	}
+
+	/**
+	 * Compiles with Java's own operators.
+	 */
+	public CompiledExpression compile() {
+		return compile(PrimitiveArithmetic.INSTANCE);
+	}
+
+	/**
+	 * Compiles into one evaluator whose operations call the given arithmetic. With {@link PrimitiveArithmetic}
+	 * the operators are inlined into the evaluator and constant subexpressions are folded.
+	 */
+	public CompiledExpression compile(DoubleArithmetic arithmetic) {
+		return new CompiledExpression(function(arithmetic), columnCount());
+	}
+
+	abstract CompiledExpression.RowFunction function(DoubleArithmetic arithmetic);
+
+	/**
+	 * @return highest column index used plus one
+	 */
+	abstract int columnCount();
+
+	/**
+	 * @return whether the value does not depend on any column
+	 */
+	abstract boolean isConstant();
+
+	private static final class Column extends Expression {
+		private final int index;
+
+		Column(int index) {
+			this.index = index;
+		}
+
+		@Override
+		CompiledExpression.RowFunction function(DoubleArithmetic arithmetic) {
+			final int index = this.index;
+			return (columns, row) -> columns[index][row];
+		}
+
+		@Override
+		int columnCount() {
+			return index + 1;
+		}
+
+		@Override
+		boolean isConstant() {
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return "$" + index;
+		}
+	}
+
+	private static final class Constant extends Expression {
+		private final double value;
+
+		Constant(double value) {
+			this.value = value;
+		}
+
+		@Override
+		CompiledExpression.RowFunction function(DoubleArithmetic arithmetic) {
+			final double value = this.value;
+			return (columns, row) -> value;
+		}
+
+		@Override
+		int columnCount() {
+			return 0;
+		}
+
+		@Override
+		boolean isConstant() {
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return String.valueOf(value);
+		}
+	}
+
+	private static final class Binary extends Expression {
+		private final Operation operation;
+		private final Expression left;
+		private final Expression right;
+
+		Binary(Operation operation, Expression left, Expression right) {
+			if (left == null || right == null) {
+				throw new IllegalArgumentException("missing operand");
+			}
+			this.operation = operation;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		CompiledExpression.RowFunction function(final DoubleArithmetic arithmetic) {
+			final CompiledExpression.RowFunction l = left.function(arithmetic);
+			final CompiledExpression.RowFunction r = right.function(arithmetic);
+			if (arithmetic != PrimitiveArithmetic.INSTANCE) {
+				switch (operation) {
+				case ADD:
+					return (columns, row) -> arithmetic.add(l.apply(columns, row), r.apply(columns, row));
+				case SUBTRACT:
+					return (columns, row) -> arithmetic.subtract(l.apply(columns, row), r.apply(columns, row));
+				case MULTIPLY:
+					return (columns, row) -> arithmetic.multiply(l.apply(columns, row), r.apply(columns, row));
+				default:
+					return (columns, row) -> arithmetic.divide(l.apply(columns, row), r.apply(columns, row));
+				}
+			}
+			if (left.isConstant() && right.isConstant()) {
+				return constant(apply(operation, l.apply(null, 0), r.apply(null, 0))).function(arithmetic);
+			}
+			switch (operation) {
+			case ADD:
+				return (columns, row) -> l.apply(columns, row) + r.apply(columns, row);
+			case SUBTRACT:
+				return (columns, row) -> l.apply(columns, row) - r.apply(columns, row);
+			case MULTIPLY:
+				return (columns, row) -> l.apply(columns, row) * r.apply(columns, row);
+			default:
+				return (columns, row) -> l.apply(columns, row) / r.apply(columns, row);
+			}
+		}
+
+		private static double apply(Operation operation, double n1, double n2) {
+			switch (operation) {
+			case ADD:
+				return n1 + n2;
+			case SUBTRACT:
+				return n1 - n2;
+			case MULTIPLY:
+				return n1 * n2;
+			default:
+				return n1 / n2;
+			}
+		}
+
+		@Override
+		int columnCount() {
+			return Math.max(left.columnCount(), right.columnCount());
+		}
+
+		@Override
+		boolean isConstant() {
+			return left.isConstant() && right.isConstant();
+		}
+
+		@Override
+		public String toString() {
+			char symbol = "+-*/".charAt(operation.ordinal());
+			return "(" + left + " " + symbol + " " + right + ")";
+		}
+	}
+}
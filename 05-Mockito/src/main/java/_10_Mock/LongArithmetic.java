@@ -0,0 +1,16 @@
+package _10_Mock;
+
+/**
+ * The four operations on long operands, without boxing.
+ */
+public interface LongArithmetic {
+
+	public long add(long n1, long n2);
+
+	public long subtract(long n1, long n2);
+
+	public long multiply(long n1, long n2);
+
+	public long divide(long n1, long n2) throws ArithmeticException;
+
+}
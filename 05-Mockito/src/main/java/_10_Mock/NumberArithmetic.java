@@ -0,0 +1,64 @@
+package _10_Mock;
+
+/**
+ * Serves the Object-typed operations from primitive ones: integral operands (Byte, Short, Integer, Long)
+ * go through the {@link LongArithmetic} and give a Long, any other Number goes through the
+ * {@link DoubleArithmetic} and gives a Double.
+ */
+public class NumberArithmetic implements Adder, Subtracter, Multiplier, Divisor {
+
+	private final LongArithmetic longArithmetic;
+	private final DoubleArithmetic doubleArithmetic;
+
+	public NumberArithmetic(LongArithmetic longArithmetic, DoubleArithmetic doubleArithmetic) {
+		this.longArithmetic = longArithmetic;
+		this.doubleArithmetic = doubleArithmetic;
+	}
+
+	@Override
+	public Object add(Object n1, Object n2) {
+		if (integral(n1, n2)) {
+			return longArithmetic.add(number(n1).longValue(), number(n2).longValue());
+		}
+		return doubleArithmetic.add(number(n1).doubleValue(), number(n2).doubleValue());
+	}
+
+	@Override
+	public Object subtract(Object n1, Object n2) {
+		if (integral(n1, n2)) {
+			return longArithmetic.subtract(number(n1).longValue(), number(n2).longValue());
+		}
+		return doubleArithmetic.subtract(number(n1).doubleValue(), number(n2).doubleValue());
+	}
+
+	@Override
+	public Object multiply(Object n1, Object n2) {
+		if (integral(n1, n2)) {
+			return longArithmetic.multiply(number(n1).longValue(), number(n2).longValue());
+		}
+		return doubleArithmetic.multiply(number(n1).doubleValue(), number(n2).doubleValue());
+	}
+
+	@Override
+	public Object divide(Object n1, Object n2) throws ArithmeticException {
+		if (integral(n1, n2)) {
+			return longArithmetic.divide(number(n1).longValue(), number(n2).longValue());
+		}
+		return doubleArithmetic.divide(number(n1).doubleValue(), number(n2).doubleValue());
+	}
+
+	private static boolean integral(Object n1, Object n2) {
+		return integral(n1) && integral(n2);
+	}
+
+	private static boolean integral(Object n) {
+		return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+	}
+
+	private static Number number(Object n) {
+		if (!(n instanceof Number)) {
+			throw new IllegalArgumentException("not a number: " + n);
+		}
+		return (Number) n;
+	}
+}
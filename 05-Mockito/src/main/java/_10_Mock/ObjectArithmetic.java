@@ -0,0 +1,61 @@
+package _10_Mock;
+
+/**
+ * The other direction of {@link NumberArithmetic}: primitive operations served by Object-typed ones, for
+ * calculators that are still wired with an {@link Adder}, {@link Subtracter}, {@link Multiplier} and
+ * {@link Divisor}. Every call boxes, so this only keeps the primitive API working, it does not make it fast.
+ */
+public class ObjectArithmetic implements LongArithmetic, DoubleArithmetic {
+
+	private final Adder adder;
+	private final Subtracter subtracter;
+	private final Multiplier multiplier;
+	private final Divisor divisor;
+
+	public ObjectArithmetic(Adder adder, Subtracter subtracter, Multiplier multiplier, Divisor divisor) {
+		this.adder = adder;
+		this.subtracter = subtracter;
+		this.multiplier = multiplier;
+		this.divisor = divisor;
+	}
+
+	@Override
+	public long add(long n1, long n2) {
+		return ((Number) adder.add(n1, n2)).longValue();
+	}
+
+	@Override
+	public long subtract(long n1, long n2) {
+		return ((Number) subtracter.subtract(n1, n2)).longValue();
+	}
+
+	@Override
+	public long multiply(long n1, long n2) {
+		return ((Number) multiplier.multiply(n1, n2)).longValue();
+	}
+
+	@Override
+	public long divide(long n1, long n2) throws ArithmeticException {
+		return ((Number) divisor.divide(n1, n2)).longValue();
+	}
+
+	@Override
+	public double add(double n1, double n2) {
+		return ((Number) adder.add(n1, n2)).doubleValue();
+	}
+
+	@Override
+	public double subtract(double n1, double n2) {
+		return ((Number) subtracter.subtract(n1, n2)).doubleValue();
+	}
+
+	@Override
+	public double multiply(double n1, double n2) {
+		return ((Number) multiplier.multiply(n1, n2)).doubleValue();
+	}
+
+	@Override
+	public double divide(double n1, double n2) {
+		return ((Number) divisor.divide(n1, n2)).doubleValue();
+	}
+}
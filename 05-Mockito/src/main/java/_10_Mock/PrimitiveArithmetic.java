@@ -0,0 +1,56 @@
+package _10_Mock;
+
+/**
+ * Java's own operators. Stateless, so one instance serves every caller and the JIT sees a single receiver
+ * class at each call site.
+ */
+public final class PrimitiveArithmetic implements LongArithmetic, DoubleArithmetic {
+
+	public static final PrimitiveArithmetic INSTANCE = new PrimitiveArithmetic();
+
+	private PrimitiveArithmetic() {
+	}
+
+	@Override
+	public long add(long n1, long n2) {
+		return n1 + n2;
+	}
+
+	@Override
+	public long subtract(long n1, long n2) {
+		return n1 - n2;
+	}
+
+	@Override
+	public long multiply(long n1, long n2) {
+		return n1 * n2;
+	}
+
+	@Override
+	public long divide(long n1, long n2) throws ArithmeticException {
+		return n1 / n2;
+	}
+
+	@Override
+	public double add(double n1, double n2) {
+		return n1 + n2;
+	}
+
+	@Override
+	public double subtract(double n1, double n2) {
+		return n1 - n2;
+	}
+
+	@Override
+	public double multiply(double n1, double n2) {
+		return n1 * n2;
+	}
+
+	/**
+	 * Follows IEEE 754: dividing by zero gives an infinity or NaN rather than an exception.
+	 */
+	@Override
+	public double divide(double n1, double n2) {
+		return n1 / n2;
+	}
+}
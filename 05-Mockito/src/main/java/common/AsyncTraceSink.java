@@ -0,0 +1,124 @@
+package common;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Moves events off the traced threads: they are queued and handed to the delegate in batches by one daemon
+ * thread. When the queue is full events are dropped and counted rather than slowing the caller down.
+ */
+public class AsyncTraceSink implements TraceSink, Closeable {
+
+	public static final int DEFAULT_CAPACITY = 8192;
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+	private static final class Record {
+		final TraceEvent event;
+		final Object argument1;
+		final Object argument2;
+
+		Record(TraceEvent event, Object argument1, Object argument2) {
+			this.event = event;
+			this.argument1 = argument1;
+			this.argument2 = argument2;
+		}
+	}
+
+	private final TraceSink delegate;
+	private final BlockingQueue<Record> queue;
+	private final int batchSize;
+	private final LongAdder dropped = new LongAdder();
+	private final Thread worker;
+	private volatile boolean running = true;
+
+	public AsyncTraceSink(TraceSink delegate) {
+		this(delegate, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+	}
+
+	public AsyncTraceSink(TraceSink delegate, int capacity, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+		}
+		this.delegate = delegate;
+		this.queue = new ArrayBlockingQueue<Record>(capacity);
+		this.batchSize = batchSize;
+		this.worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "AsyncTraceSink");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	@Override
+	public void trace(TraceEvent event, Object argument1, Object argument2) {
+		if (!running || !queue.offer(new Record(event, argument1, argument2))) {
+			dropped.increment();
+		}
+	}
+
+	/**
+	 * @return number of events dropped because the queue was full or the sink closed
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Delivers what is already queued, then stops the worker.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		worker.interrupt();
+		try {
+			worker.join(CLOSE_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void drain() {
+		List<Record> batch = new ArrayList<Record>(batchSize);
+		while (true) {
+			boolean stopping = !running;
+			if (stopping) {
+				queue.drainTo(batch, batchSize);
+			} else {
+				try {
+					Record first = queue.poll(100, TimeUnit.MILLISECONDS);
+					if (first != null) {
+						batch.add(first);
+						queue.drainTo(batch, batchSize - 1);
+					}
+				} catch (InterruptedException e) {
+					// close() wakes the worker up to drain what is left
+					continue;
+				}
+			}
+			if (batch.isEmpty()) {
+				if (stopping) {
+					return;
+				}
+				continue;
+			}
+			for (Record record : batch) {
+				try {
+					delegate.trace(record.event, record.argument1, record.argument2);
+				} catch (RuntimeException e) {
+					dropped.increment();
+				}
+			}
+			batch.clear();
+		}
+	}
+}
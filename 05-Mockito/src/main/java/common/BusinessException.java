@@ -0,0 +1,21 @@
+package common;
+
+/**
+ * Base of the checked exceptions that report expected outcomes rather than bugs. In
+ * {@link StacklessExceptions stackless mode} they are created without a stack trace, without suppressed
+ * exceptions and with no cause, so an instance cannot be changed after it is thrown and
+ * {@link StacklessExceptions#newInstance(Class)} can hand out one per class.
+ * <p>
+ * Subclasses need a public no-argument constructor.
+ */
+public abstract class BusinessException extends Exception {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = -6010617432049012442L;
+
+	protected BusinessException() {
+		super(null, null, !StacklessExceptions.isEnabled(), !StacklessExceptions.isEnabled());
+	}
+}
@@ -0,0 +1,24 @@
+package common;
+
+import java.io.PrintStream;
+
+/**
+ * Prints each event's message on its own line, the way the traced classes used to print directly.
+ */
+public class ConsoleTraceSink implements TraceSink {
+
+	private final PrintStream out;
+
+	public ConsoleTraceSink() {
+		this(System.out);
+	}
+
+	public ConsoleTraceSink(PrintStream out) {
+		this.out = out;
+	}
+
+	@Override
+	public void trace(TraceEvent event, Object argument1, Object argument2) {
+		out.println(event.format(argument1, argument2));
+	}
+}
@@ -0,0 +1,77 @@
+package common;
+
+/**
+ * Fixed-size histogram of non-negative latencies for load generators. Memory stays the same however many
+ * values are recorded: values below 128 get a bucket each, larger ones share log-linear buckets of 64 per
+ * power of two, so a reported percentile is at most about 1.6% above the true value. Not thread-safe; give
+ * each thread its own histogram and {@link #add(LatencyHistogram) add} them up afterwards.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 6;
+
+	private final long[] counts = new long[(64 - SUB_BUCKET_BITS) << SUB_BUCKET_BITS];
+	private long count;
+	private long max;
+
+	public void record(long value) {
+		record(value, 1);
+	}
+
+	/**
+	 * Records value occurrences times, for example one round trip shared by a window of requests.
+	 */
+	public void record(long value, long occurrences) {
+		if (value < 0) {
+			throw new IllegalArgumentException("negative value " + value);
+		}
+		counts[index(value)] += occurrences;
+		count += occurrences;
+		max = Math.max(max, value);
+	}
+
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		max = Math.max(max, other.max);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return value below which the given share of recorded values lies, as the upper end of its bucket; 0
+	 *         without values
+	 */
+	public long getPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(highestValue(i), max);
+			}
+		}
+		return max;
+	}
+
+	private static int index(long value) {
+		int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+		return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+	}
+
+	private static long highestValue(int index) {
+		if (index < 2 << SUB_BUCKET_BITS) {
+			return index;
+		}
+		int shift = (index >>> SUB_BUCKET_BITS) - 1;
+		long lowest = (long) (index - (shift << SUB_BUCKET_BITS)) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
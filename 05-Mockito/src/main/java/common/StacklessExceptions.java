@@ -0,0 +1,45 @@
+package common;
+
+/**
+ * Switch for the {@link BusinessException business exceptions} that report expected outcomes (not enough funds,
+ * wrong dish, invalid question, ...). Set the system property {@code stacklessExceptions=true} to have them skip
+ * the stack walk when created and to let {@link #newInstance(Class)} hand out one shared, immutable instance.
+ * <p>
+ * The setting is read once, so the JIT treats it as a constant. Stack traces of these exceptions are lost in
+ * that mode; leave it off while debugging.
+ */
+public final class StacklessExceptions {
+
+	public static final String PROPERTY = "stacklessExceptions";
+
+	private static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+	private static final ClassValue<BusinessException> SHARED = new ClassValue<BusinessException>() {
+		@Override
+		protected BusinessException computeValue(Class<?> type) {
+			return create(type.asSubclass(BusinessException.class));
+		}
+	};
+
+	private StacklessExceptions() {
+	}
+
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+
+	/**
+	 * @return the shared instance of type in stackless mode, a new one otherwise
+	 */
+	public static <E extends BusinessException> E newInstance(Class<E> type) {
+		return ENABLED ? type.cast(SHARED.get(type)) : create(type);
+	}
+
+	private static <E extends BusinessException> E create(Class<E> type) {
+		try {
+			return type.getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException(type + " needs a public no-argument constructor", e);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package common;
+
+/**
+ * Entry point of the trace events, replacing console output on the service paths.
+ * <p>
+ * Nothing is traced until a sink is set. With the default {@link TraceSink#NONE} a call still costs a volatile
+ * read of the sink and an empty call; arguments are passed unformatted, and call sites that would have to
+ * compute an argument check {@link #isEnabled()} first. Setting the system property {@code traceDisabled=true}
+ * removes even that: the flag is read once, so the JIT drops the calls, and sinks set later are ignored.
+ */
+public final class Trace {
+
+	public static final String DISABLED_PROPERTY = "traceDisabled";
+
+	private static final boolean DISABLED = Boolean.getBoolean(DISABLED_PROPERTY);
+
+	private static volatile TraceSink sink = TraceSink.NONE;
+
+	private Trace() {
+	}
+
+	/**
+	 * @param sink receives every event from now on, {@link TraceSink#NONE} or null to switch tracing off;
+	 *        ignored when tracing is disabled by the system property
+	 */
+	public static void setSink(TraceSink sink) {
+		if (!DISABLED) {
+			Trace.sink = sink == null ? TraceSink.NONE : sink;
+		}
+	}
+
+	public static TraceSink getSink() {
+		return sink;
+	}
+
+	public static boolean isEnabled() {
+		return !DISABLED && sink != TraceSink.NONE;
+	}
+
+	public static void trace(TraceEvent event) {
+		if (!DISABLED) {
+			sink.trace(event, null, null);
+		}
+	}
+
+	public static void trace(TraceEvent event, Object argument) {
+		if (!DISABLED) {
+			sink.trace(event, argument, null);
+		}
+	}
+
+	public static void trace(TraceEvent event, Object argument1, Object argument2) {
+		if (!DISABLED) {
+			sink.trace(event, argument1, argument2);
+		}
+	}
+}
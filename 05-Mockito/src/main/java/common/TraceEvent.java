@@ -0,0 +1,32 @@
+package common;
+
+/**
+ * What a traced call site reports. The message is a {@link String#format(String, Object...)} pattern over the
+ * event's arguments and is only applied by sinks that print.
+ */
+public enum TraceEvent {
+	DAO_AVAILABILITY_CHECK("Is Foo available?"),
+	DAO_AVAILABLE("Yes"),
+	DAO_NOT_AVAILABLE("No"),
+	UNEXPECTED_ANSWER("Answer is %s"),
+	DISH_TASTED("Taste the food"),
+	DISH_EATEN("Ate the food"),
+	WRONG_DISH("Wrong dish!"),
+	NOT_TASTY("Not very tasty"),
+	EMPLOYEE_MOVED("Employee moves from %s to %s"),
+	ACCEPT_FAILED("Accepting a connection failed, pausing for %s ms: %s");
+
+	private final String message;
+
+	TraceEvent(String message) {
+		this.message = message;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public String format(Object argument1, Object argument2) {
+		return String.format(message, argument1, argument2);
+	}
+}
@@ -0,0 +1,23 @@
+package common;
+
+/**
+ * Receives the events reported through {@link Trace}. Called on the traced thread, so implementations must be
+ * thread-safe and should not block.
+ */
+public interface TraceSink {
+
+	/**
+	 * Sink that ignores everything; the default.
+	 */
+	TraceSink NONE = new TraceSink() {
+		@Override
+		public void trace(TraceEvent event, Object argument1, Object argument2) {
+		}
+	};
+
+	/**
+	 * @param argument1 first argument of the event's message, null if it has none
+	 * @param argument2 second argument of the event's message, null if it has fewer
+	 */
+	void trace(TraceEvent event, Object argument1, Object argument2);
+}
@@ -29,6 +29,26 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -37,10 +57,24 @@ import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import _01_HelloWorld.CachingDao;
+import _01_HelloWorld.CircuitBreakerDao;
+import _01_HelloWorld.CircuitBreakerOpenException;
+import _01_HelloWorld.ConnectionHealthCheck;
 import _01_HelloWorld.DAONotAvailableException;
+import _01_HelloWorld.DaoLoadGenerator;
+import _01_HelloWorld.ExecutorAsyncDao;
 import _01_HelloWorld.IDao;
 import _01_HelloWorld.InvalidQuestionException;
+import _01_HelloWorld.QuestionBatcher;
+import _01_HelloWorld.RemoteDao;
 import _01_HelloWorld.ServiceImpl;
+import _01_HelloWorld.StandInDaoServer;
+import _02_VoidMethod.NotSuchATastyException;
+import _02_VoidMethod.WrongDishException;
+import _03_Verify.NotEnoughFundsException;
+import common.BusinessException;
+import common.StacklessExceptions;
 
 @SuppressWarnings({ "unchecked", "deprecation" })
 public class _01_HelloWorld {
@@ -185,4 +219,513 @@ public class _01_HelloWorld {
 		verify(DAOMock, times(1)).bye();
 	}
 
+	@Test
+	public void question_WithHealthCheck_GreetsOnce() throws InvalidQuestionException, DAONotAvailableException{
+		when(DAOMock.greet()).thenReturn(IDao.HELLO_WORLD);
+		when(DAOMock.question(IDao.ANY_NEW_TOPICS)).thenReturn(IDao.NO_NEW_TOPIC);
+		try (ConnectionHealthCheck healthCheck = new ConnectionHealthCheck(DAOMock, 1, TimeUnit.HOURS)) {
+			classUnderTest.setHealthCheck(healthCheck);
+			for (int i = 0; i < 3; i++) {
+				Assert.assertEquals(classUnderTest.question(IDao.ANY_NEW_TOPICS), IDao.NO_NEW_TOPIC);
+			}
+		}
+		verify(DAOMock, times(1)).greet();
+		verify(DAOMock, times(3)).question(IDao.ANY_NEW_TOPICS);
+	}
+
+	@Test
+	public void question_WithHealthCheck_FailsFastWhileDown() throws InvalidQuestionException{
+		when(DAOMock.greet()).thenReturn(null);
+		try (ConnectionHealthCheck healthCheck = new ConnectionHealthCheck(DAOMock, 1, TimeUnit.HOURS)) {
+			classUnderTest.setHealthCheck(healthCheck);
+			for (int i = 0; i < 3; i++) {
+				try {
+					classUnderTest.question(IDao.ANY_NEW_TOPICS);
+					Assert.fail("I should not be reached");
+				} catch (DAONotAvailableException ex) {
+					// expected
+				}
+			}
+			Assert.assertFalse(healthCheck.isAvailable());
+			when(DAOMock.greet()).thenReturn(IDao.HELLO_WORLD);
+			Assert.assertTrue(healthCheck.refresh());
+		}
+		verify(DAOMock, times(2)).greet();
+		verify(DAOMock, never()).question(IDao.ANY_NEW_TOPICS);
+	}
+
+	@Test
+	public void questionAsync_WhenNewTopicIsAvailable() throws Exception{
+		when(DAOMock.greet()).thenReturn(IDao.HELLO_WORLD);
+		when(DAOMock.question(IDao.ANY_NEW_TOPICS)).thenReturn(IDao.YES_NEW_TOPICS_AVAILABLE);
+		when(DAOMock.question(IDao.WHAT_IS_TODAYS_TOPIC)).thenReturn(IDao.TOPIC_MOCKITO);
+		when(DAOMock.getPrice(IDao.TOPIC_MOCKITO)).thenReturn(99);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			classUnderTest.setAsyncDao(new ExecutorAsyncDao(DAOMock, executor));
+			Assert.assertEquals(classUnderTest.questionAsync(IDao.ANY_NEW_TOPICS).get(), "Topic is Mockito, price is 99");
+		} finally {
+			executor.shutdown();
+		}
+		verify(DAOMock, times(1)).greet();
+		verify(DAOMock, times(1)).question(IDao.WHAT_IS_TODAYS_TOPIC);
+		verify(DAOMock, times(1)).bye();
+	}
+
+	@Test
+	public void questionAsync_WhenDAOIsNotAvailable() throws Exception{
+		when(DAOMock.greet()).thenReturn(null);
+		when(DAOMock.question(IDao.ANY_NEW_TOPICS)).thenReturn(IDao.NO_NEW_TOPIC);
+		classUnderTest.setAsyncDao(new ExecutorAsyncDao(DAOMock, new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+		}));
+		try {
+			classUnderTest.questionAsync(IDao.ANY_NEW_TOPICS).get();
+			Assert.fail("I should not be reached");
+		} catch (ExecutionException ex) {
+			Assert.assertEquals(ex.getCause().getClass(), DAONotAvailableException.class);
+		}
+		verify(DAOMock, never()).bye();
+	}
+
+	@Test
+	public void questionAsync_WithHealthCheck_GreetsOffCallerThread() throws Exception{
+		final Thread caller = Thread.currentThread();
+		when(DAOMock.greet()).thenAnswer(new Answer<String>(){
+			@Override
+			public String answer(InvocationOnMock invocation) throws Throwable {
+				return Thread.currentThread() == caller ? null : IDao.HELLO_WORLD;
+			}
+		});
+		when(DAOMock.question(IDao.ANY_NEW_TOPICS)).thenReturn(IDao.NO_NEW_TOPIC);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try (ConnectionHealthCheck healthCheck = new ConnectionHealthCheck(DAOMock, 1, TimeUnit.HOURS)) {
+			classUnderTest.setHealthCheck(healthCheck);
+			classUnderTest.setAsyncDao(new ExecutorAsyncDao(DAOMock, executor));
+			for (int i = 0; i < 3; i++) {
+				Assert.assertEquals(classUnderTest.questionAsync(IDao.ANY_NEW_TOPICS).get(), IDao.NO_NEW_TOPIC);
+			}
+			Assert.assertTrue(healthCheck.isAvailable());
+		} finally {
+			executor.shutdown();
+		}
+		verify(DAOMock, times(1)).greet();
+	}
+
+	@Test
+	public void questionAll_WhenTopicHasNoPrice() throws Exception{
+		when(DAOMock.greet()).thenReturn(IDao.HELLO_WORLD);
+		when(DAOMock.questionAll(Mockito.anyList())).thenReturn(Arrays.asList(IDao.YES_NEW_TOPICS_AVAILABLE));
+		when(DAOMock.question(IDao.WHAT_IS_TODAYS_TOPIC)).thenReturn(IDao.TOPIC_MOCKITO);
+		when(DAOMock.getPrices(Mockito.anyCollection())).thenReturn(Collections.<String, Integer>emptyMap());
+		try {
+			classUnderTest.questionAll(Arrays.asList(IDao.ANY_NEW_TOPICS));
+			Assert.fail("I should not be reached");
+		} catch (IllegalStateException ex) {
+			// expected
+		}
+		verify(DAOMock, never()).bye();
+	}
+
+	@Test
+	public void questionBatch_SharesRoundTrips() throws Exception{
+		when(DAOMock.greet()).thenReturn(IDao.HELLO_WORLD);
+		when(DAOMock.questionAll(Mockito.anyList())).thenAnswer(new Answer<List<String>>(){
+			@Override
+			public List<String> answer(InvocationOnMock invocation) throws Throwable {
+				List<String> answers = new ArrayList<String>();
+				for (Object question : (List<Object>) invocation.getArguments()[0]) {
+					if ("INVALID_QUESTION".equals(question)) {
+						throw new InvalidQuestionException();
+					}
+					answers.add(IDao.ANY_NEW_TOPICS.equals(question) ? IDao.YES_NEW_TOPICS_AVAILABLE : IDao.NO_NEW_TOPIC);
+				}
+				return answers;
+			}
+		});
+		when(DAOMock.question(IDao.WHAT_IS_TODAYS_TOPIC)).thenReturn(IDao.TOPIC_MOCKITO);
+		when(DAOMock.getPrices(Mockito.anyCollection())).thenReturn(Collections.singletonMap(IDao.TOPIC_MOCKITO, 99));
+
+		Assert.assertEquals(classUnderTest.questionAll(Arrays.asList(IDao.ANY_NEW_TOPICS, "other", IDao.ANY_NEW_TOPICS)),
+				Arrays.asList("Topic is Mockito, price is 99", IDao.NO_NEW_TOPIC, "Topic is Mockito, price is 99"));
+		verify(DAOMock, times(1)).greet();
+		verify(DAOMock, times(1)).question(IDao.WHAT_IS_TODAYS_TOPIC);
+		verify(DAOMock, times(1)).bye();
+
+		final String[] questions = {IDao.ANY_NEW_TOPICS, "other", "INVALID_QUESTION", "another"};
+		final Object[] answers = new Object[questions.length];
+		try (QuestionBatcher batcher = new QuestionBatcher(classUnderTest, 1, TimeUnit.SECONDS, questions.length)) {
+			classUnderTest.setQuestionBatcher(batcher);
+			Thread[] callers = new Thread[questions.length];
+			for (int i = 0; i < questions.length; i++) {
+				final int caller = i;
+				callers[i] = new Thread() {
+					@Override
+					public void run() {
+						try {
+							answers[caller] = classUnderTest.questionBatch(questions[caller]);
+						} catch (Exception ex) {
+							answers[caller] = ex;
+						}
+					}
+				};
+				callers[i].start();
+			}
+			for (Thread caller : callers) {
+				caller.join();
+			}
+		}
+		Assert.assertEquals(answers[0], "Topic is Mockito, price is 99");
+		Assert.assertEquals(answers[1], IDao.NO_NEW_TOPIC);
+		Assert.assertEquals(answers[2].getClass(), InvalidQuestionException.class);
+		Assert.assertEquals(answers[3], IDao.NO_NEW_TOPIC);
+		// the full batch failed, then each question was asked on its own
+		verify(DAOMock, times(6)).greet();
+	}
+
+	@Test
+	public void questionBatcher_CloseFinishesBatchInFlight() throws Exception{
+		final CountDownLatch asked = new CountDownLatch(1);
+		when(DAOMock.greet()).thenReturn(IDao.HELLO_WORLD);
+		when(DAOMock.questionAll(Mockito.anyList())).thenAnswer(new Answer<List<String>>(){
+			@Override
+			public List<String> answer(InvocationOnMock invocation) throws Throwable {
+				asked.countDown();
+				Thread.sleep(100);
+				return Collections.nCopies(((List<?>) invocation.getArguments()[0]).size(), IDao.NO_NEW_TOPIC);
+			}
+		});
+		QuestionBatcher batcher = new QuestionBatcher(classUnderTest, 0, TimeUnit.SECONDS, 1);
+		CompletableFuture<String> inFlight = batcher.submit(IDao.ANY_NEW_TOPICS);
+		asked.await();
+		CompletableFuture<String> queued = batcher.submit("other");
+		batcher.close();
+		Assert.assertEquals(inFlight.get(), IDao.NO_NEW_TOPIC);
+		Assert.assertEquals(queued.get(), IDao.NO_NEW_TOPIC);
+		try {
+			batcher.submit("late").get();
+			Assert.fail("I should not be reached");
+		} catch (ExecutionException ex) {
+			Assert.assertEquals(ex.getCause().getClass(), IllegalStateException.class);
+		}
+	}
+
+	@Test
+	public void questionBatcher_WorkerErrorFailsPendingQuestions() throws Exception{
+		final CountDownLatch asked = new CountDownLatch(1);
+		final CountDownLatch queued = new CountDownLatch(1);
+		when(DAOMock.greet()).thenReturn(IDao.HELLO_WORLD);
+		when(DAOMock.questionAll(Mockito.anyList())).thenAnswer(new Answer<List<String>>(){
+			@Override
+			public List<String> answer(InvocationOnMock invocation) throws Throwable {
+				asked.countDown();
+				queued.await();
+				throw new AssertionError("worker dies");
+			}
+		});
+		QuestionBatcher batcher = new QuestionBatcher(classUnderTest, 0, TimeUnit.SECONDS, 1);
+		CompletableFuture<String> first = batcher.submit(IDao.ANY_NEW_TOPICS);
+		asked.await();
+		CompletableFuture<String> second = batcher.submit("other");
+		queued.countDown();
+		for (CompletableFuture<String> answer : Arrays.asList(first, second)) {
+			try {
+				answer.get(10, TimeUnit.SECONDS);
+				Assert.fail("I should not be reached");
+			} catch (ExecutionException ex) {
+				Assert.assertEquals(ex.getCause().getCause().getMessage(), "worker dies");
+			}
+		}
+		batcher.close();
+	}
+
+	@Test
+	public void cachingDao_LoadsOncePerKey() throws Exception{
+		when(DAOMock.getPrice(IDao.TOPIC_MOCKITO)).thenAnswer(new Answer<Integer>(){
+			@Override
+			public Integer answer(InvocationOnMock invocation) throws Throwable {
+				Thread.sleep(100);
+				return 99;
+			}
+		});
+		when(DAOMock.question(IDao.WHAT_IS_TODAYS_TOPIC)).thenReturn(IDao.TOPIC_MOCKITO);
+		when(DAOMock.question(IDao.ANY_NEW_TOPICS)).thenReturn(IDao.NO_NEW_TOPIC);
+		final CachingDao cachingDao = new CachingDao(DAOMock);
+
+		final int[] prices = new int[8];
+		Thread[] callers = new Thread[prices.length];
+		for (int i = 0; i < callers.length; i++) {
+			final int caller = i;
+			callers[i] = new Thread() {
+				@Override
+				public void run() {
+					prices[caller] = cachingDao.getPrice(IDao.TOPIC_MOCKITO);
+				}
+			};
+			callers[i].start();
+		}
+		for (Thread caller : callers) {
+			caller.join();
+		}
+		for (int price : prices) {
+			Assert.assertEquals(price, 99);
+		}
+		verify(DAOMock, times(1)).getPrice(IDao.TOPIC_MOCKITO);
+		Assert.assertEquals(cachingDao.missCount(), 1);
+		Assert.assertEquals(cachingDao.hitCount(), 7);
+		Assert.assertTrue(cachingDao.averageLoadNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(cachingDao.question(IDao.WHAT_IS_TODAYS_TOPIC), IDao.TOPIC_MOCKITO);
+			Assert.assertEquals(cachingDao.question(IDao.ANY_NEW_TOPICS), IDao.NO_NEW_TOPIC);
+		}
+		verify(DAOMock, times(1)).question(IDao.WHAT_IS_TODAYS_TOPIC);
+		verify(DAOMock, times(3)).question(IDao.ANY_NEW_TOPICS);
+
+		cachingDao.setPriceTtl(0, TimeUnit.SECONDS);
+		cachingDao.getPrice(IDao.TOPIC_MOCKITO);
+		cachingDao.getPrice(IDao.TOPIC_MOCKITO);
+		verify(DAOMock, times(3)).getPrice(IDao.TOPIC_MOCKITO);
+
+		// an Error from the delegate fails the load instead of leaving the key hanging
+		when(DAOMock.getPrice("broken")).thenThrow(new AssertionError("broken")).thenReturn(5);
+		try {
+			cachingDao.getPrice("broken");
+			Assert.fail("I should not be reached");
+		} catch (AssertionError ex) {
+			Assert.assertEquals(ex.getMessage(), "broken");
+		}
+		Assert.assertEquals(cachingDao.getPrice("broken"), 5);
+	}
+
+	@Test
+	public void cachingDao_BatchesMisses() throws Exception{
+		when(DAOMock.getPrices(Mockito.anyCollection())).thenAnswer(new Answer<Map<String, Integer>>(){
+			@Override
+			public Map<String, Integer> answer(InvocationOnMock invocation) throws Throwable {
+				Map<String, Integer> prices = new LinkedHashMap<String, Integer>();
+				for (Object tutorial : (Collection<?>) invocation.getArguments()[0]) {
+					prices.put((String) tutorial, ((String) tutorial).length());
+				}
+				return prices;
+			}
+		});
+		when(DAOMock.questionAll(Mockito.anyList())).thenAnswer(new Answer<List<String>>(){
+			@Override
+			public List<String> answer(InvocationOnMock invocation) throws Throwable {
+				List<String> answers = new ArrayList<String>();
+				for (Object question : (List<?>) invocation.getArguments()[0]) {
+					answers.add(IDao.WHAT_IS_TODAYS_TOPIC.equals(question) ? IDao.TOPIC_MOCKITO : IDao.NO_NEW_TOPIC);
+				}
+				return answers;
+			}
+		});
+		CachingDao cachingDao = new CachingDao(DAOMock);
+
+		Assert.assertEquals(cachingDao.getPrices(Arrays.asList("ab", "abc")).toString(), "{ab=2, abc=3}");
+		Assert.assertEquals(cachingDao.getPrices(Arrays.asList("abc", "a", "ab")).toString(), "{abc=3, a=1, ab=2}");
+		Assert.assertEquals(cachingDao.getPrice("a"), 1);
+		verify(DAOMock).getPrices(Arrays.asList("ab", "abc"));
+		verify(DAOMock).getPrices(Arrays.asList("a"));
+		verify(DAOMock, never()).getPrice(Mockito.anyString());
+		Assert.assertEquals(cachingDao.missCount(), 3);
+		Assert.assertEquals(cachingDao.hitCount(), 3);
+
+		List<String> questions = Arrays.asList(IDao.ANY_NEW_TOPICS, IDao.WHAT_IS_TODAYS_TOPIC, IDao.ANY_NEW_TOPICS);
+		List<String> expected = Arrays.asList(IDao.NO_NEW_TOPIC, IDao.TOPIC_MOCKITO, IDao.NO_NEW_TOPIC);
+		Assert.assertEquals(cachingDao.questionAll(questions), expected);
+		Assert.assertEquals(cachingDao.questionAll(questions), expected);
+		verify(DAOMock).questionAll(Arrays.asList(IDao.ANY_NEW_TOPICS, IDao.ANY_NEW_TOPICS, IDao.WHAT_IS_TODAYS_TOPIC));
+		verify(DAOMock).questionAll(Arrays.asList(IDao.ANY_NEW_TOPICS, IDao.ANY_NEW_TOPICS));
+		Assert.assertEquals(cachingDao.question(IDao.WHAT_IS_TODAYS_TOPIC), IDao.TOPIC_MOCKITO);
+		verify(DAOMock, never()).question(Mockito.anyString());
+	}
+
+	@Test
+	public void circuitBreaker_OpensAndRecovers() throws Exception{
+		when(DAOMock.greet()).thenReturn(null);
+		CircuitBreakerDao breaker = new CircuitBreakerDao(DAOMock);
+		breaker.setWindowSize(4);
+		breaker.setMinimumCalls(4);
+		breaker.setHalfOpenCalls(1);
+		breaker.setOpenDuration(50, 1000, TimeUnit.MILLISECONDS);
+		ServiceImpl service = new ServiceImpl(breaker);
+		for (int i = 0; i < 10; i++) {
+			try {
+				service.question(IDao.ANY_NEW_TOPICS);
+				Assert.fail("I should not be reached");
+			} catch (DAONotAvailableException ex) {
+				// expected
+			}
+		}
+		Assert.assertEquals(breaker.getState(), CircuitBreakerDao.State.OPEN);
+		Assert.assertEquals(breaker.rejectedCount(), 6);
+		verify(DAOMock, times(4)).greet();
+		try {
+			breaker.getPrice(IDao.TOPIC_MOCKITO);
+			Assert.fail("I should not be reached");
+		} catch (CircuitBreakerOpenException ex) {
+			Assert.assertEquals(ex.getStackTrace().length, 0);
+		}
+		// a batch is one call, rejected as a whole
+		try {
+			breaker.getPrices(Arrays.asList(IDao.TOPIC_MOCKITO, "other"));
+			Assert.fail("I should not be reached");
+		} catch (CircuitBreakerOpenException ex) {
+			// expected
+		}
+		Assert.assertEquals(breaker.rejectedCount(), 8);
+		verify(DAOMock, never()).getPrice(Mockito.anyString());
+		verify(DAOMock, never()).getPrices(Mockito.anyCollection());
+
+		when(DAOMock.greet()).thenReturn(IDao.HELLO_WORLD);
+		when(DAOMock.question(IDao.ANY_NEW_TOPICS)).thenReturn(IDao.NO_NEW_TOPIC);
+		Thread.sleep(60);
+		Assert.assertEquals(service.question(IDao.ANY_NEW_TOPICS), IDao.NO_NEW_TOPIC);
+		Assert.assertEquals(breaker.getState(), CircuitBreakerDao.State.CLOSED);
+
+		// with the three successful calls above, two failed batches reach the 50% threshold
+		when(DAOMock.questionAll(Mockito.anyList())).thenThrow(new IllegalStateException("down"));
+		for (int i = 0; i < 2; i++) {
+			try {
+				breaker.questionAll(Arrays.asList(IDao.ANY_NEW_TOPICS, IDao.ANY_NEW_TOPICS));
+				Assert.fail("I should not be reached");
+			} catch (IllegalStateException ex) {
+				// expected
+			}
+		}
+		Assert.assertEquals(breaker.getState(), CircuitBreakerDao.State.OPEN);
+		verify(DAOMock, times(2)).questionAll(Mockito.anyList());
+	}
+
+	@Test
+	public void remoteDao_AgainstStandInServer() throws Exception{
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		try (StandInDaoServer server = new StandInDaoServer(StandInDaoServer.CANNED, new InetSocketAddress(loopback, 0));
+				RemoteDao dao = new RemoteDao(new InetSocketAddress(loopback, server.getPort()), 2)) {
+			server.setLatency(1, 1, TimeUnit.MILLISECONDS);
+			ServiceImpl service = new ServiceImpl(dao);
+			Assert.assertEquals(service.question(IDao.ANY_NEW_TOPICS), "Topic is Mockito, price is 99");
+			try {
+				dao.question("INVALID_QUESTION");
+				Assert.fail("I should not be reached");
+			} catch (InvalidQuestionException ex) {
+				// expected
+			}
+
+			DaoLoadGenerator.Result result = DaoLoadGenerator.run(service, 8, 200);
+			Assert.assertTrue(result.getCalls() > 0);
+			Assert.assertEquals(result.getFailures(), 0);
+			Assert.assertTrue(result.getLatencyPercentile(99) >= TimeUnit.MILLISECONDS.toNanos(5));
+
+			server.setErrorRate(1);
+			try {
+				dao.greet();
+				Assert.fail("I should not be reached");
+			} catch (IllegalStateException ex) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void remoteDao_NullAnswersAndReconnect() throws Exception{
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		IDao backend = mock(IDao.class);
+		try (StandInDaoServer server = new StandInDaoServer(backend, new InetSocketAddress(loopback, 0));
+				RemoteDao dao = new RemoteDao(new InetSocketAddress(loopback, server.getPort()), 2)) {
+			dao.setTimeout(2, TimeUnit.SECONDS);
+			Assert.assertNull(dao.greet());
+			Assert.assertNull(dao.question(IDao.ANY_NEW_TOPICS));
+			Assert.assertNull(dao.question(null));
+			verify(backend).question(null);
+
+			server.dropConnections();
+			int failures = 0;
+			for (int i = 0; i < 4; i++) {
+				try {
+					dao.greet();
+				} catch (IllegalStateException ex) {
+					failures++;
+				}
+			}
+			// at most the one call per connection that ran into the drop
+			Assert.assertTrue(failures <= 2);
+			for (int i = 0; i < 4; i++) {
+				Assert.assertNull(dao.greet());
+			}
+		}
+	}
+
+	@Test
+	public void stacklessExceptions_byDefault_FreshWithStackTrace(){
+		Assert.assertFalse(StacklessExceptions.isEnabled());
+		DAONotAvailableException first = StacklessExceptions.newInstance(DAONotAvailableException.class);
+		DAONotAvailableException second = StacklessExceptions.newInstance(DAONotAvailableException.class);
+		Assert.assertNotSame(first, second);
+		Assert.assertTrue(first.getStackTrace().length > 0);
+		first.addSuppressed(second);
+		Assert.assertEquals(first.getSuppressed().length, 1);
+	}
+
+	@Test
+	public void stacklessExceptions_whenEnabled_SharedAndImmutable() throws Exception{
+		// the mode is fixed when StacklessExceptions loads, so it needs a JVM of its own
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process process = new ProcessBuilder(java, "-D" + StacklessExceptions.PROPERTY + "=true",
+				"-cp", System.getProperty("java.class.path"), StacklessCheck.class.getName())
+				.redirectErrorStream(true).start();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (InputStream in = process.getInputStream()) {
+			byte[] buffer = new byte[4096];
+			for (int read; (read = in.read(buffer)) != -1;) {
+				output.write(buffer, 0, read);
+			}
+		}
+		Assert.assertEquals(output.toString(), process.waitFor(), 0);
+	}
+
+	/**
+	 * Run with stackless mode on; prints what is wrong and exits with 1 unless every business exception is one
+	 * shared instance that has no stack trace and takes no cause or suppressed exception.
+	 */
+	public static class StacklessCheck {
+		public static void main(String[] args) {
+			List<Class<? extends BusinessException>> types = Arrays.<Class<? extends BusinessException>>asList(
+					DAONotAvailableException.class, InvalidQuestionException.class, NotSuchATastyException.class,
+					WrongDishException.class, NotEnoughFundsException.class);
+			List<String> problems = new ArrayList<String>();
+			if (!StacklessExceptions.isEnabled()) {
+				problems.add("stackless mode is off");
+			}
+			for (Class<? extends BusinessException> type : types) {
+				BusinessException shared = StacklessExceptions.newInstance(type);
+				if (StacklessExceptions.newInstance(type) != shared) {
+					problems.add(type.getSimpleName() + " is not shared");
+				}
+				if (shared.getStackTrace().length != 0) {
+					problems.add(type.getSimpleName() + " has a stack trace");
+				}
+				try {
+					shared.initCause(new IllegalStateException());
+					problems.add(type.getSimpleName() + " took a cause");
+				} catch (IllegalStateException e) {
+					// expected, the cause is fixed at construction
+				}
+				shared.addSuppressed(new IllegalStateException());
+				if (shared.getSuppressed().length != 0) {
+					problems.add(type.getSimpleName() + " kept a suppressed exception");
+				}
+			}
+			if (new NotEnoughFundsException().getStackTrace().length != 0) {
+				problems.add("a new instance has a stack trace");
+			}
+			System.out.println(problems);
+			System.exit(problems.isEmpty() ? 0 : 1);
+		}
+	}
+
 }
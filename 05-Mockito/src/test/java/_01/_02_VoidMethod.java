@@ -13,6 +13,11 @@ value.
  */
 
 package _01;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -24,6 +29,11 @@ import _02_VoidMethod.Customer;
 import _02_VoidMethod.Dish;
 import _02_VoidMethod.NotSuchATastyException;
 import _02_VoidMethod.WrongDishException;
+import common.AsyncTraceSink;
+import common.StacklessExceptions;
+import common.Trace;
+import common.TraceEvent;
+import common.TraceSink;
 
 
 public class _02_VoidMethod {
@@ -99,4 +109,43 @@ public class _02_VoidMethod {
 		}
 	}
 
+	@Test
+	public void eat_traced() throws WrongDishException, NotSuchATastyException{
+		final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+		AsyncTraceSink sink = new AsyncTraceSink(new TraceSink() {
+			@Override
+			public void trace(TraceEvent event, Object argument1, Object argument2) {
+				messages.add(event.format(argument1, argument2));
+			}
+		});
+		Trace.setSink(sink);
+		try {
+			Mockito.doNothing().doThrow(new WrongDishException()).when(dishMock).eat("mild");
+			classUnderTest.eat("mild");
+			try {
+				classUnderTest.eat("mild");
+				Assert.fail("I should not be reached");
+			} catch (WrongDishException ex) {
+				// expected
+			}
+		} finally {
+			Trace.setSink(null);
+			sink.close();
+		}
+		Assert.assertEquals(Arrays.asList("Taste the food", "Ate the food", "Taste the food", "Wrong dish!"), messages);
+		Assert.assertEquals(0, sink.getDroppedCount());
+		Assert.assertFalse(Trace.isEnabled());
+	}
+
+	@Test
+	public void tryEat_reportsOutcome() throws WrongDishException, NotSuchATastyException{
+		Mockito.doNothing()
+		.doThrow(StacklessExceptions.newInstance(WrongDishException.class))
+		.doThrow(StacklessExceptions.newInstance(NotSuchATastyException.class))
+		.when(dishMock).eat("hot");
+		Assert.assertEquals(Customer.Outcome.EATEN, classUnderTest.tryEat("hot"));
+		Assert.assertEquals(Customer.Outcome.WRONG_DISH, classUnderTest.tryEat("hot"));
+		Assert.assertEquals(Customer.Outcome.NOT_TASTY, classUnderTest.tryEat("hot"));
+	}
+
 }
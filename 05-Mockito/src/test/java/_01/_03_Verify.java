@@ -10,6 +10,13 @@ Mockito Verify
 
 package _01;
 
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -18,7 +25,11 @@ import org.mockito.Mockito;
 
 import _03_Verify.Account;
 import _03_Verify.AccountManager;
+import _03_Verify.BalanceStore;
+import _03_Verify.ConcurrentAccountManager;
 import _03_Verify.Customer;
+import _03_Verify.DenseAccountManager;
+import _03_Verify.DurableAccountManager;
 import _03_Verify.NotEnoughFundsException;
 
 public class _03_Verify {
@@ -78,4 +89,290 @@ public class _03_Verify {
 		order.verifyNoMoreInteractions();
 		Mockito.verifyNoMoreInteractions(mockAccountManager);		
 	}
+
+	@Test
+	public void tryWithdraw_whenInsufficientFund_ReturnNotEnoughFunds(){
+		Mockito.when(mockAccountManager.tryWithdraw(mockAccount, 300L)).thenReturn(AccountManager.INSUFFICIENT_FUNDS).thenReturn(100L);
+		Assert.assertEquals(classUnderTest.tryWithdraw(300L), Customer.NOT_ENOUGH_FUNDS);
+		Assert.assertEquals(classUnderTest.tryWithdraw(300L), 100L);
+		Mockito.verify(mockAccountManager, Mockito.times(2)).tryWithdraw(mockAccount, 300L);
+		Mockito.verify(mockAccountManager, Mockito.times(0)).withdraw(mockAccount, 300L);
+	}
+
+	@Test
+	public void tryWithdraw_concurrentlyNeverOverdraws() throws InterruptedException{
+		ConcurrentAccountManager accountManager = new ConcurrentAccountManager();
+		final Customer customer = new Customer();
+		customer.setAccountManager(accountManager);
+		Account account = accountManager.open(customer, 100000L);
+		final long[] withdrawn = new long[4];
+		Thread[] threads = new Thread[withdrawn.length];
+		for (int t = 0; t < threads.length; t++) {
+			final int thread = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 50000; i++) {
+						if (customer.tryWithdraw(1L) != Customer.NOT_ENOUGH_FUNDS) {
+							withdrawn[thread]++;
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		long total = 0;
+		for (int t = 0; t < threads.length; t++) {
+			threads[t].join();
+			total += withdrawn[t];
+		}
+		Assert.assertEquals(total, 100000L);
+		Assert.assertEquals(accountManager.getBalance(account), 0L);
+		Assert.assertSame(accountManager.open(customer, 5L), account);
+	}
+
+	@Test
+	public void tryWithdraw_whenAmountNotPositive_Rejected(){
+		ConcurrentAccountManager concurrent = new ConcurrentAccountManager();
+		Account account = concurrent.open(new Customer(), 100L);
+		DenseAccountManager dense = new DenseAccountManager();
+		int id = dense.open(100L);
+		for (long amount : new long[] { 0L, -1L, Long.MIN_VALUE }) {
+			try {
+				concurrent.tryWithdraw(account, amount);
+				Assert.fail("I should not be reached");
+			} catch (IllegalArgumentException ex) {
+				// expected
+			}
+			try {
+				dense.tryWithdraw(id, amount);
+				Assert.fail("I should not be reached");
+			} catch (IllegalArgumentException ex) {
+				// expected
+			}
+		}
+		Assert.assertEquals(concurrent.getBalance(account), 100L);
+		Assert.assertEquals(dense.getBalance(id), 100L);
+	}
+
+	@Test
+	public void tryWithdraw_neverReturnsABalanceMistakenForInsufficientFunds(){
+		ConcurrentAccountManager accountManager = new ConcurrentAccountManager();
+		Account overdrawn = accountManager.open(new Customer(), 0L);
+		accountManager.withdraw(overdrawn, Long.MAX_VALUE);
+		accountManager.withdraw(overdrawn, 1L);
+		Assert.assertEquals(accountManager.getBalance(overdrawn), Long.MIN_VALUE);
+		Assert.assertEquals(accountManager.tryWithdraw(overdrawn, 1L), AccountManager.INSUFFICIENT_FUNDS);
+		Assert.assertEquals(accountManager.getBalance(overdrawn), Long.MIN_VALUE);
+
+		Account rich = accountManager.open(new Customer(), Long.MAX_VALUE);
+		Assert.assertEquals(accountManager.tryWithdraw(rich, Long.MAX_VALUE), 0L);
+
+		// the default answers from its own check even if the balance moves before it reads it again
+		final long[] balance = { 100L };
+		AccountManager racy = new AccountManager() {
+			@Override
+			public long getBalance(Account account) {
+				return balance[0];
+			}
+
+			@Override
+			public long withdraw(Account account, long amount) {
+				balance[0] = Long.MIN_VALUE;
+				return balance[0];
+			}
+
+			@Override
+			public Account findAccount(Customer customer) {
+				return null;
+			}
+		};
+		Assert.assertEquals(racy.tryWithdraw(new Account(), 40L), 60L);
+	}
+
+	@Test
+	public void denseAccountManager_keepsBalancesById() throws InterruptedException{
+		DenseAccountManager accountManager = new DenseAccountManager();
+		for (int i = 0; i < 3 * BalanceStore.SHARD_SIZE; i++) {
+			Assert.assertEquals(accountManager.open(i), i);
+		}
+		Customer customer = new Customer();
+		customer.setAccountManager(accountManager);
+		Account account = accountManager.open(customer, 500L);
+		Assert.assertEquals(account.getId(), 3 * BalanceStore.SHARD_SIZE);
+		Assert.assertSame(accountManager.findAccount(customer), account);
+
+		Assert.assertEquals(customer.tryWithdraw(300L), 200L);
+		Assert.assertEquals(customer.tryWithdraw(300L), Customer.NOT_ENOUGH_FUNDS);
+		Assert.assertEquals(accountManager.getBalance(account), 200L);
+		Assert.assertEquals(accountManager.getBalance(2 * BalanceStore.SHARD_SIZE + 7), 2 * BalanceStore.SHARD_SIZE + 7L);
+		Assert.assertEquals(accountManager.deposit(5, 10L), 15L);
+		Assert.assertEquals(accountManager.tryWithdraw(5, 15L), 0L);
+		try {
+			accountManager.getBalance(accountManager.size());
+			Assert.fail("I should not be reached");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+
+		// racing openings for one customer allocate one id, and every id is readable once handed out
+		final DenseAccountManager racing = new DenseAccountManager();
+		final Customer shared = new Customer();
+		final Account[] opened = new Account[4];
+		final boolean[] readable = {true};
+		Thread[] threads = new Thread[opened.length];
+		for (int t = 0; t < threads.length; t++) {
+			final int thread = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					opened[thread] = racing.open(shared, 100L);
+					for (int i = 0; i < 20000; i++) {
+						int id = racing.open(i);
+						readable[0] &= racing.getBalance(id) == i;
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertTrue(readable[0]);
+		Assert.assertEquals(racing.size(), 1 + 4 * 20000);
+		for (Account open : opened) {
+			Assert.assertSame(open, opened[0]);
+		}
+	}
+
+	@Test
+	public void durableAccountManager_recoversFromSnapshotAndLog() throws Exception{
+		Path directory = Files.createTempDirectory("ledger");
+		try {
+			final DurableAccountManager accountManager = new DurableAccountManager(directory);
+			accountManager.setSnapshotEvery(0);
+			for (int i = 0; i < 3; i++) {
+				accountManager.open(1000L);
+			}
+			// callers that arrive while a force is running share the next one; without group commit each of the
+			// 800 withdrawals would need its own
+			long syncsBefore = accountManager.getSyncCount();
+			final CountDownLatch start = new CountDownLatch(1);
+			Thread[] threads = new Thread[8];
+			for (int t = 0; t < threads.length; t++) {
+				threads[t] = new Thread() {
+					@Override
+					public void run() {
+						try {
+							start.await();
+						} catch (InterruptedException e) {
+							return;
+						}
+						for (int i = 0; i < 100; i++) {
+							accountManager.tryWithdraw(0, 1L);
+						}
+					}
+				};
+				threads[t].start();
+			}
+			start.countDown();
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			long syncs = accountManager.getSyncCount() - syncsBefore;
+			Assert.assertTrue(syncs + " syncs for 800 withdrawals", syncs <= 400L);
+			accountManager.snapshot();
+			Assert.assertEquals(accountManager.deposit(1, 50L), 1050L);
+			Assert.assertEquals(accountManager.tryWithdraw(2, 5000L), AccountManager.INSUFFICIENT_FUNDS);
+			accountManager.close();
+
+			// a write torn by a crash is dropped on recovery
+			Path segment = null;
+			try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "wal-*")) {
+				for (Path file : segments) {
+					if (segment == null || file.compareTo(segment) > 0) {
+						segment = file;
+					}
+				}
+			}
+			Files.write(segment, new byte[] {2, 0, 0, 0}, StandardOpenOption.APPEND);
+
+			DurableAccountManager recovered = new DurableAccountManager(directory);
+			Assert.assertEquals(recovered.size(), 3);
+			Assert.assertEquals(recovered.getBalance(0), 200L);
+			Assert.assertEquals(recovered.getBalance(1), 1050L);
+			Assert.assertEquals(recovered.getBalance(2), 1000L);
+			Customer customer = new Customer();
+			customer.setAccountManager(recovered);
+			recovered.attach(customer, 2);
+			recovered.setSnapshotEvery(10);
+			for (int i = 0; i < 50; i++) {
+				Assert.assertEquals(customer.tryWithdraw(10L), 990L - 10L * i);
+			}
+			Assert.assertEquals(recovered.open(7L), 3);
+			recovered.close();
+			Assert.assertNull(recovered.getSnapshotFailure());
+
+			recovered = new DurableAccountManager(directory);
+			Assert.assertEquals(recovered.getBalance(2), 500L);
+			Assert.assertEquals(recovered.getBalance(3), 7L);
+			recovered.close();
+		} finally {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+				for (Path file : files) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(directory);
+		}
+	}
+
+
+	@Test
+	public void durableAccountManager_recoversFromTornRolledSegment() throws Exception{
+		Path directory = Files.createTempDirectory("ledger");
+		try {
+			DurableAccountManager accountManager = new DurableAccountManager(directory);
+			accountManager.setSnapshotEvery(0);
+			accountManager.open(1000L);
+			Assert.assertEquals(accountManager.deposit(0, 10L), 1010L);
+			Assert.assertEquals(accountManager.deposit(0, 20L), 1030L);
+			accountManager.close();
+
+			// a crash after a roll wrote the old segment and created the next one, before the old one was forced
+			Path segment = null;
+			try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "wal-*")) {
+				for (Path file : segments) {
+					if (Files.size(file) > 0 && (segment == null || file.compareTo(segment) > 0)) {
+						segment = file;
+					}
+				}
+			}
+			try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+				channel.truncate(channel.size() - 1);
+			}
+			String name = segment.getFileName().toString();
+			long start = Long.parseLong(name.substring("wal-".length(), name.length() - ".log".length()));
+			Path next = directory.resolve(String.format("wal-%019d.log", start + 1000));
+			Files.createFile(next);
+
+			DurableAccountManager recovered = new DurableAccountManager(directory);
+			Assert.assertEquals(recovered.getBalance(0), 1010L);
+			Assert.assertFalse(Files.exists(next));
+			Assert.assertEquals(recovered.deposit(0, 5L), 1015L);
+			recovered.close();
+
+			recovered = new DurableAccountManager(directory);
+			Assert.assertEquals(recovered.getBalance(0), 1015L);
+			recovered.close();
+		} finally {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+				for (Path file : files) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(directory);
+		}
+	}
+
 }
@@ -1,14 +1,30 @@
 package _01;
 
+import static _10_Mock.Expression.column;
+import static _10_Mock.Expression.constant;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.SocketChannel;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.testng.Assert;
 
 import _10_Mock.Adder;
+import _10_Mock.BatchArithmetic;
 import _10_Mock.CalculatorApplication;
+import _10_Mock.CalculatorLoadGenerator;
+import _10_Mock.CalculatorProtocol;
+import _10_Mock.CalculatorServer;
+import _10_Mock.CompiledExpression;
 import _10_Mock.Divisor;
+import _10_Mock.Expression;
 import _10_Mock.Multiplier;
+import _10_Mock.PrimitiveArithmetic;
 import _10_Mock.Subtracter;
 
 
@@ -34,6 +50,130 @@ public class _10_Mock {
 		Object result = classUnderTest.add(1, 2);
 		Assert.assertEquals(result, 3);
 	}
+
+	@Test
+	public void primitive(){
+		CalculatorApplication calculator = new CalculatorApplication(PrimitiveArithmetic.INSTANCE, PrimitiveArithmetic.INSTANCE);
+		Assert.assertEquals(calculator.addLong(1, 2), 3L);
+		Assert.assertEquals(calculator.divideLong(7, 2), 3L);
+		Assert.assertEquals(calculator.multiplyDouble(1.5, 2), 3.0);
+		Assert.assertEquals(calculator.add(1, 2), 3L);
+		Assert.assertEquals(calculator.subtract(1, 0.5), 0.5);
+	}
+
+	@Test
+	public void primitiveOverObjectOperations(){
+		Mockito.when(addMock.add(1L, 2L)).thenReturn(3);
+		Mockito.when(divideMock.divide(1.0, 4.0)).thenReturn(0.25);
+		Assert.assertEquals(classUnderTest.addLong(1, 2), 3L);
+		Assert.assertEquals(classUnderTest.divideDouble(1, 4), 0.25);
+	}
+
+	@Test
+	public void batch(){
+		CalculatorApplication calculator = new CalculatorApplication(PrimitiveArithmetic.INSTANCE, PrimitiveArithmetic.INSTANCE);
+		long[] longs = {1, 2, 3, 4, 5};
+		Assert.assertEquals(calculator.multiplyAll(longs, longs, new long[5]), new long[] {1, 4, 9, 16, 25});
+		Assert.assertEquals(calculator.subtractAll(new double[] {1, 2}, new double[] {0.5, 0.5}, new double[2]), new double[] {0.5, 1.5});
+
+		DoubleBuffer n1 = ByteBuffer.allocateDirect(3 * 8).asDoubleBuffer().put(new double[] {1, 2, 3});
+		n1.flip();
+		DoubleBuffer n2 = DoubleBuffer.wrap(new double[] {0, 4, 4, 4}, 1, 3).slice();
+		DoubleBuffer result = calculator.divideAll(n1, n2, DoubleBuffer.allocate(3));
+		Assert.assertEquals(result.array(), new double[] {0.25, 0.5, 0.75});
+		Assert.assertEquals(n1.position(), 0);
+
+		Mockito.when(addMock.add(1L, 1L)).thenReturn(2);
+		Mockito.when(addMock.add(2L, 2L)).thenReturn(4);
+		Assert.assertEquals(classUnderTest.addAll(new long[] {1, 2}, new long[] {1, 2}, new long[2]), new long[] {2, 4});
+	}
+
+	@Test
+	public void divideWithoutExceptions(){
+		CalculatorApplication calculator = new CalculatorApplication(PrimitiveArithmetic.INSTANCE, PrimitiveArithmetic.INSTANCE);
+		long[] n1 = new long[130];
+		long[] n2 = new long[130];
+		for (int i = 0; i < n1.length; i++) {
+			n1[i] = 10 * i;
+			n2[i] = i % 64 == 1 ? 0 : 5;
+		}
+		long[] result = new long[130];
+		long[] errors = {-1, -1, -1};
+		Assert.assertEquals(calculator.divideAll(n1, n2, result, errors), 3);
+		Assert.assertEquals(errors, new long[] {2, 2, 2});
+		Assert.assertTrue(BatchArithmetic.failed(errors, 129));
+		Assert.assertFalse(BatchArithmetic.failed(errors, 128));
+		Assert.assertEquals(result[1], 0);
+		Assert.assertEquals(result[128], 256);
+
+		long[] mockErrors = new long[1];
+		Mockito.when(divideMock.divide(6L, 3L)).thenReturn(2L);
+		Assert.assertEquals(classUnderTest.divideAll(new long[] {6, 6}, new long[] {3, 0}, new long[2], mockErrors), 1);
+		Assert.assertEquals(mockErrors[0], 2);
+	}
+
+	@Test
+	public void server() throws Exception {
+		CalculatorApplication calculator = new CalculatorApplication(PrimitiveArithmetic.INSTANCE, PrimitiveArithmetic.INSTANCE);
+		InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+		try (CalculatorServer server = new CalculatorServer(calculator, loopback);
+				SocketChannel client = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()))) {
+			ByteBuffer requests = ByteBuffer.allocate(4 * CalculatorProtocol.REQUEST_SIZE);
+			CalculatorProtocol.putRequest(requests, CalculatorProtocol.ADD_LONG, 40L, 2L);
+			CalculatorProtocol.putRequest(requests, CalculatorProtocol.DIVIDE_LONG, 1L, 0L);
+			CalculatorProtocol.putRequest(requests, CalculatorProtocol.MULTIPLY_DOUBLE, 1.5, 3.0);
+			CalculatorProtocol.putRequest(requests, (byte) 99, 0L, 0L);
+			requests.flip();
+			while (requests.hasRemaining()) {
+				client.write(requests);
+			}
+			ByteBuffer responses = ByteBuffer.allocate(4 * CalculatorProtocol.RESPONSE_SIZE);
+			while (responses.hasRemaining()) {
+				client.read(responses);
+			}
+			responses.flip();
+			Assert.assertEquals(responses.get(), CalculatorProtocol.OK);
+			Assert.assertEquals(responses.getLong(), 42L);
+			Assert.assertEquals(responses.get(), CalculatorProtocol.DIVIDE_BY_ZERO);
+			responses.getLong();
+			Assert.assertEquals(responses.get(), CalculatorProtocol.OK);
+			Assert.assertEquals(responses.getDouble(), 4.5);
+			Assert.assertEquals(responses.get(), CalculatorProtocol.UNKNOWN_OPERATION);
+
+			CalculatorLoadGenerator.Result result = CalculatorLoadGenerator.run(
+					new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()), 2, 16, 200);
+			Assert.assertTrue(result.getRequests() > 0);
+			Assert.assertTrue(result.getLatencyPercentile(99) >= result.getLatencyPercentile(50));
+
+			// a client that dies with a RuntimeException is reported with its cause
+			try {
+				CalculatorLoadGenerator.run(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()), 1, -1, 200);
+				Assert.fail("I should not be reached");
+			} catch (IllegalStateException ex) {
+				Assert.assertEquals(ex.getCause().getClass(), IllegalArgumentException.class);
+			}
+		}
+	}
+
+	@Test
+	public void compiledExpression(){
+		CalculatorApplication calculator = new CalculatorApplication(PrimitiveArithmetic.INSTANCE, PrimitiveArithmetic.INSTANCE);
+		Expression formula = column(0).add(column(1)).multiply(column(2)).divide(column(3).add(constant(1).subtract(constant(1))));
+		CompiledExpression compiled = calculator.compile(formula);
+		Assert.assertEquals(compiled.getColumnCount(), 4);
+		double[][] columns = new double[4][100];
+		double[] expected = new double[100];
+		for (int row = 0; row < 100; row++) {
+			for (int c = 0; c < 4; c++) {
+				columns[c][row] = row + c + 1;
+			}
+			expected[row] = (columns[0][row] + columns[1][row]) * columns[2][row] / columns[3][row];
+		}
+		Assert.assertEquals(compiled.evaluate(columns, new double[100]), expected);
+
+		Mockito.when(addMock.add(1.0, 2.0)).thenReturn(30.0);
+		Assert.assertEquals(classUnderTest.compile(column(0).add(column(1))).evaluate(new double[][] {{1}, {2}}, 0), 30.0);
+	}
 	
 
 }
@@ -0,0 +1,224 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Factors whole batches of ints on a fork-join pool.
+ * <p>
+ * The batch is cut into many more chunks than there are workers, because the cost per value is very
+ * uneven: a prime above the sieve limit costs thousands of divisions, a smooth number a handful of
+ * table lookups. Idle workers steal the remaining chunks, so a run of expensive values does not
+ * leave the rest of the pool waiting on one thread.
+ * <p>
+ * Each chunk factors into its own buffer first; a second parallel pass copies the buffers into one
+ * flattened {@link PrimeFactorTable} once every chunk's size is known.
+ */
+public class BulkPrimeFactor {
+
+	// chunks per worker, enough for stealing to even out chunks full of primes
+	private static final int CHUNKS_PER_WORKER = 64;
+	private static final int MIN_CHUNK = 64;
+	private static final int MAX_CHUNK = 4096;
+	// largest array length every VM allocates
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	private final PrimeFactor primeFactor;
+	private final ForkJoinPool pool;
+
+	public BulkPrimeFactor() {
+		this(new PrimeFactor(), ForkJoinPool.commonPool());
+	}
+
+	private BulkPrimeFactor(PrimeFactor primeFactor, ForkJoinPool pool) {
+		this.primeFactor = primeFactor;
+		this.pool = pool;
+	}
+
+	public static BulkPrimeFactor using(PrimeFactor primeFactor, ForkJoinPool pool) {
+		return new BulkPrimeFactor(primeFactor, pool);
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void matchesOneAtATime() {
+		BulkPrimeFactor bulk = using(PrimeFactor.withSieveLimit(1000), new ForkJoinPool(4));
+		PrimeFactor single = new PrimeFactor();
+
+		PrimeFactorTable range = bulk.getPrimeFactors(-5, 100000);
+		Assert.assertEquals(100005, range.size());
+		for (int i = 0; i < range.size(); i++) {
+			Assert.assertEquals(single.getPrimeFactors(i - 5), range.getPrimeFactors(i));
+		}
+
+		int[] values = {Integer.MAX_VALUE, 0, 1, 2147483646, 46337*46337, 2*2*3*3*5*5*9*9*13, 97};
+		PrimeFactorTable array = bulk.getPrimeFactors(values);
+		for (int i = 0; i < values.length; i++) {
+			Assert.assertEquals(single.getPrimeFactors(values[i]), array.getPrimeFactors(i));
+		}
+
+		Assert.assertEquals(0, bulk.getPrimeFactors(new int[0]).size());
+		Assert.assertEquals(Arrays.asList(2, 2, 2), bulk.getPrimeFactors(8, 9).getPrimeFactors(0));
+		try {
+			bulk.getPrimeFactors(Integer.MIN_VALUE, Integer.MAX_VALUE);
+			Assert.fail("I should not be reached");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	public PrimeFactorTable getPrimeFactors(int[] values) {
+		return factor(values, 0, values.length);
+	}
+
+	/**
+	 * @return factors of from, from + 1, ..., to - 1, indexed from 0
+	 */
+	public PrimeFactorTable getPrimeFactors(int from, int to) {
+		if (from > to) {
+			throw new IllegalArgumentException("from " + from + " is after to " + to);
+		}
+		long size = (long) to - from;
+		if (size > Integer.MAX_VALUE - 1) {
+			throw new IllegalArgumentException("range too large: " + size);
+		}
+		return factor(null, from, (int) size);
+	}
+
+	private PrimeFactorTable factor(int[] values, int from, int size) {
+		if (size == 0) {
+			return new PrimeFactorTable(new int[1], new int[0]);
+		}
+		int chunkSize = chunkSize(size);
+		// in long, size + chunkSize overflows for the largest ranges
+		int chunkCount = (int) (((long) size + chunkSize - 1) / chunkSize);
+		int[] offsets = new int[size + 1];
+		int[][] chunkFactors = new int[chunkCount][];
+		int[] chunkStarts = new int[chunkCount + 1];
+
+		pool.invoke(new FactorChunks(values, from, size, chunkSize, offsets, chunkFactors, chunkStarts, 0, chunkCount));
+		long total = 0;
+		for (int c = 0; c < chunkCount; c++) {
+			total += chunkStarts[c + 1];
+			if (total > MAX_ARRAY_SIZE) {
+				throw new IllegalArgumentException("more than " + MAX_ARRAY_SIZE + " factors in " + size + " values");
+			}
+			chunkStarts[c + 1] = (int) total;
+		}
+		int[] factors = new int[chunkStarts[chunkCount]];
+		pool.invoke(new CopyChunks(size, chunkSize, offsets, chunkFactors, chunkStarts, factors, 0, chunkCount));
+		return new PrimeFactorTable(offsets, factors);
+	}
+
+	private int chunkSize(int size) {
+		int chunkSize = size / (pool.getParallelism() * CHUNKS_PER_WORKER);
+		return Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, chunkSize));
+	}
+
+	/**
+	 * First pass: factor every value of chunks [lo, hi) into a per-chunk buffer, recording the factor count
+	 * of value i in offsets[i + 1] and the total of chunk c in chunkStarts[c + 1].
+	 */
+	private final class FactorChunks extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] values;
+		private final int from;
+		private final int size;
+		private final int chunkSize;
+		private final int[] offsets;
+		private final int[][] chunkFactors;
+		private final int[] chunkStarts;
+		private final int lo;
+		private final int hi;
+
+		FactorChunks(int[] values, int from, int size, int chunkSize, int[] offsets, int[][] chunkFactors, int[] chunkStarts,
+				int lo, int hi) {
+			this.values = values;
+			this.from = from;
+			this.size = size;
+			this.chunkSize = chunkSize;
+			this.offsets = offsets;
+			this.chunkFactors = chunkFactors;
+			this.chunkStarts = chunkStarts;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > 1) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new FactorChunks(values, from, size, chunkSize, offsets, chunkFactors, chunkStarts, lo, mid),
+						new FactorChunks(values, from, size, chunkSize, offsets, chunkFactors, chunkStarts, mid, hi));
+				return;
+			}
+			int start = lo * chunkSize;
+			int end = (int) Math.min(size, (long) start + chunkSize);
+			// most ints have only a few prime factors, grow on demand instead of reserving MAX_FACTORS each
+			int[] buffer = new int[(end - start) * 4 + PrimeFactor.MAX_FACTORS];
+			int used = 0;
+			for (int i = start; i < end; i++) {
+				if (buffer.length - used < PrimeFactor.MAX_FACTORS) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+				int value = values == null ? from + i : values[i];
+				int count = primeFactor.getPrimeFactors(value, buffer, used);
+				offsets[i + 1] = count;
+				used += count;
+			}
+			chunkFactors[lo] = buffer;
+			chunkStarts[lo + 1] = used;
+		}
+	}
+
+	/**
+	 * Second pass: copy each chunk buffer to its final position and turn the per-value counts into offsets.
+	 */
+	private static final class CopyChunks extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int size;
+		private final int chunkSize;
+		private final int[] offsets;
+		private final int[][] chunkFactors;
+		private final int[] chunkStarts;
+		private final int[] factors;
+		private final int lo;
+		private final int hi;
+
+		CopyChunks(int size, int chunkSize, int[] offsets, int[][] chunkFactors, int[] chunkStarts, int[] factors, int lo, int hi) {
+			this.size = size;
+			this.chunkSize = chunkSize;
+			this.offsets = offsets;
+			this.chunkFactors = chunkFactors;
+			this.chunkStarts = chunkStarts;
+			this.factors = factors;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > 1) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new CopyChunks(size, chunkSize, offsets, chunkFactors, chunkStarts, factors, lo, mid),
+						new CopyChunks(size, chunkSize, offsets, chunkFactors, chunkStarts, factors, mid, hi));
+				return;
+			}
+			int chunkStart = chunkStarts[lo];
+			System.arraycopy(chunkFactors[lo], 0, factors, chunkStart, chunkStarts[lo + 1] - chunkStart);
+			chunkFactors[lo] = null;
+			int start = lo * chunkSize;
+			int end = (int) Math.min(size, (long) start + chunkSize);
+			int offset = chunkStart;
+			for (int i = start; i < end; i++) {
+				offset += offsets[i + 1];
+				offsets[i + 1] = offset;
+			}
+		}
+	}
+}
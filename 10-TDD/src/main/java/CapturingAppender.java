@@ -0,0 +1,266 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import junit.framework.Assert;
+
+/**
+ * Keeps the most recent events of every level in memory so tests can assert on what was logged.
+ * <p>
+ * Each level has its own lock-free ring of {@link #setCapacity(int) capacity} events; once a ring is full
+ * the oldest events of that level are overwritten, so a chatty DEBUG path cannot push the one WARN a test
+ * looks for out of the buffer. Counts per level and per logger cover every event, overwritten or not.
+ * All methods are safe to call while other threads are logging.
+ */
+public class CapturingAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	// TRACE, DEBUG, INFO, WARN, ERROR
+	private static final int LEVELS = 5;
+
+	private int capacity = DEFAULT_CAPACITY;
+	private LevelRing[] rings;
+	private final ConcurrentHashMap<String, LongAdder> loggerCounts = new ConcurrentHashMap<String, LongAdder>();
+
+	/**
+	 * Events kept per level, rounded up to a power of two; has to be set before {@link #start()}.
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void keepsLatestPerLevel() throws InterruptedException {
+		LoggerContext context = new LoggerContext();
+		final Logger logger = context.getLogger("capture");
+		final CapturingAppender capture = new CapturingAppender();
+		capture.setContext(context);
+		capture.setCapacity(8);
+		capture.start();
+
+		capture.doAppend(new LoggingEvent(null, logger, Level.WARN, "disk {} full", null, new Object[] {"/tmp"}));
+		for (int i = 0; i < 100; i++) {
+			capture.doAppend(new LoggingEvent(null, logger, Level.DEBUG, "step {}", null, new Object[] {i}));
+		}
+		Assert.assertTrue(capture.containsMessage(Level.WARN, "/tmp full"));
+		Assert.assertFalse(capture.containsMessage(Level.ERROR, "/tmp full"));
+		Assert.assertTrue(capture.containsMessage(Level.DEBUG, "step 99"));
+		Assert.assertFalse(capture.containsMessage(Level.DEBUG, "step 91"));
+		Assert.assertEquals(8, capture.getEvents(Level.DEBUG).size());
+		Assert.assertEquals("step 92", capture.getEvents(Level.DEBUG).get(0).getFormattedMessage());
+		Assert.assertEquals(100, capture.count(Level.DEBUG));
+		Assert.assertEquals(101, capture.count("capture"));
+		for (Level threshold : new Level[] {Level.ALL, Level.OFF}) {
+			try {
+				capture.count(threshold);
+				Assert.fail("I should not be reached");
+			} catch (IllegalArgumentException ex) {
+				// expected
+			}
+		}
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final Logger threadLogger = context.getLogger("capture.t" + t);
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 10000; i++) {
+						capture.doAppend(new LoggingEvent(null, threadLogger, Level.INFO, "i", null, null));
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(40000, capture.count(Level.INFO));
+		Assert.assertEquals(10000, capture.count("capture.t3"));
+		Assert.assertEquals(8, capture.getEvents(Level.INFO).size());
+
+		capture.clear();
+		Assert.assertTrue(capture.getEvents(Level.DEBUG).isEmpty());
+		Assert.assertEquals(0, capture.count(Level.INFO));
+		Assert.assertEquals(0, capture.count("capture"));
+	}
+
+	@Override
+	public void start() {
+		if (capacity < 1) {
+			addError("capacity must be positive: " + capacity);
+			return;
+		}
+		int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		rings = new LevelRing[LEVELS];
+		for (int i = 0; i < LEVELS; i++) {
+			rings[i] = new LevelRing(size);
+		}
+		super.start();
+	}
+
+	@Override
+	protected void append(ILoggingEvent event) {
+		rings[index(event.getLevel())].add(event);
+		LongAdder count = loggerCounts.get(event.getLoggerName());
+		if (count == null) {
+			LongAdder added = new LongAdder();
+			count = loggerCounts.putIfAbsent(event.getLoggerName(), added);
+			if (count == null) {
+				count = added;
+			}
+		}
+		count.increment();
+	}
+
+	/**
+	 * @return whether a retained event of this level has a formatted message containing substring
+	 */
+	public boolean containsMessage(Level level, String substring) {
+		return containsMessage(null, level, substring);
+	}
+
+	/**
+	 * Same as {@link #containsMessage(Level, String)}, restricted to events of one logger. There is no index
+	 * per logger; this scans the retained events of the level, at most {@link #getCapacity() capacity} of them.
+	 */
+	public boolean containsMessage(String loggerName, Level level, String substring) {
+		for (ILoggingEvent event : getEvents(level)) {
+			if ((loggerName == null || loggerName.equals(event.getLoggerName()))
+					&& event.getFormattedMessage().contains(substring)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return retained events of this level, oldest first
+	 * @throws IllegalArgumentException for {@link Level#ALL} and {@link Level#OFF}
+	 */
+	public List<ILoggingEvent> getEvents(Level level) {
+		checkStarted();
+		return rings[index(level)].snapshot();
+	}
+
+	/**
+	 * @return events of this level since start or the last {@link #clear()}, including overwritten ones
+	 */
+	public long count(Level level) {
+		checkStarted();
+		return rings[index(level)].count();
+	}
+
+	/**
+	 * @return events of exactly this logger since start or the last {@link #clear()}
+	 */
+	public long count(String loggerName) {
+		LongAdder count = loggerCounts.get(loggerName);
+		return count == null ? 0 : count.sum();
+	}
+
+	/**
+	 * Forgets everything appended so far. Events appended concurrently may or may not survive.
+	 */
+	public void clear() {
+		checkStarted();
+		for (LevelRing ring : rings) {
+			ring.clear();
+		}
+		loggerCounts.clear();
+	}
+
+	private void checkStarted() {
+		if (rings == null) {
+			throw new IllegalStateException("appender not started");
+		}
+	}
+
+	// ALL and OFF are thresholds, no event is logged at them
+	private static int index(Level level) {
+		if (level.toInt() < Level.TRACE_INT || level.toInt() > Level.ERROR_INT) {
+			throw new IllegalArgumentException("events are kept per level from TRACE to ERROR, not " + level);
+		}
+		return Math.min(LEVELS - 1, level.toInt() / Level.DEBUG_INT);
+	}
+
+	private static final class Entry {
+		final long sequence;
+		final ILoggingEvent event;
+
+		Entry(long sequence, ILoggingEvent event) {
+			this.sequence = sequence;
+			this.event = event;
+		}
+	}
+
+	/**
+	 * Ring of the latest events of one level. The sequence stored with each event tells a reader whether the
+	 * slot still holds the event it expects or has been overwritten by a later lap.
+	 */
+	private static final class LevelRing {
+		private final AtomicReferenceArray<Entry> slots;
+		private final int mask;
+		private final AtomicLong next = new AtomicLong();
+		private volatile long floor;
+
+		LevelRing(int size) {
+			this.slots = new AtomicReferenceArray<Entry>(size);
+			this.mask = size - 1;
+		}
+
+		void add(ILoggingEvent event) {
+			long sequence = next.getAndIncrement();
+			Entry entry = new Entry(sequence, event);
+			int index = (int) sequence & mask;
+			while (true) {
+				Entry current = slots.get(index);
+				// a writer from a later lap got here first, this event is already too old to keep
+				if (current != null && current.sequence > sequence) {
+					return;
+				}
+				if (slots.compareAndSet(index, current, entry)) {
+					return;
+				}
+			}
+		}
+
+		List<ILoggingEvent> snapshot() {
+			long end = next.get();
+			long start = Math.max(floor, end - slots.length());
+			List<ILoggingEvent> events = new ArrayList<ILoggingEvent>((int) (end - start));
+			for (long sequence = start; sequence < end; sequence++) {
+				Entry entry = slots.get((int) sequence & mask);
+				if (entry != null && entry.sequence == sequence) {
+					events.add(entry.event);
+				}
+			}
+			return events;
+		}
+
+		long count() {
+			return next.get() - floor;
+		}
+
+		void clear() {
+			floor = next.get();
+		}
+	}
+}
@@ -0,0 +1,20 @@
+import java.util.function.IntConsumer;
+
+/**
+ * Decides which keys a {@link FactorizationCache} keeps.
+ * <p>
+ * Implementations need not be thread-safe: the cache serializes every call under one lock.
+ */
+public interface EvictionPolicy {
+
+	/**
+	 * A cached key was read. The cache may skip this call when the policy is busy, so it is a hint.
+	 */
+	void recordAccess(int key);
+
+	/**
+	 * A key that was not cached has just been added. Every key that has to leave the cache, including the
+	 * new one if the policy rejects it, is passed to evict.
+	 */
+	void admit(int key, IntConsumer evict);
+}
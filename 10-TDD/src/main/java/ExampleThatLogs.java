@@ -1,3 +1,5 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -19,8 +21,8 @@ public class ExampleThatLogs {
     private static final Logger LOG = (Logger) LoggerFactory.getLogger(ExampleThatLogs.class);
 
     public String concat(String a, String b) {
-        LOG.info(a+b);
-        return a+b;
+        LOG.info("{}{}", a, b);
+        return a + b;
     }
 
 	private static Logger logger = (Logger) LoggerFactory.getLogger(ExampleThatLogs.class);
@@ -50,4 +52,21 @@ public class ExampleThatLogs {
         }
       }));
   }
+
+	@Test
+	public void testSomethingCaptured() {
+		ch.qos.logback.classic.Logger logger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(ExampleThatLogs.class);
+		CapturingAppender capture = new CapturingAppender();
+		capture.setContext(logger.getLoggerContext());
+		capture.start();
+		logger.addAppender(capture);
+		try {
+			new ExampleThatLogs().concat("bimal", "jain");
+
+			assertTrue(capture.containsMessage(Level.INFO, "bimaljain"));
+			assertEquals(1, capture.count(ExampleThatLogs.class.getName()));
+		} finally {
+			logger.detachAppender(capture);
+		}
+	}
 }
@@ -0,0 +1,169 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Size-bounded, thread-safe memo in front of {@link PrimeFactor}.
+ * <p>
+ * Factorizations are stored as packed (prime, exponent) int arrays. Reads go straight to a concurrent
+ * map; only the bookkeeping of the {@link EvictionPolicy} is serialized, and a read that finds the
+ * policy busy skips recording its access rather than waiting for it. Hit, miss and eviction counts are
+ * kept for sizing the cache.
+ */
+public class FactorizationCache {
+
+	private static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+	private final PrimeFactor primeFactor;
+	private final EvictionPolicy policy;
+	private final ConcurrentHashMap<Integer, int[]> entries = new ConcurrentHashMap<Integer, int[]>();
+	private final ReentrantLock policyLock = new ReentrantLock();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final IntConsumer evict = new IntConsumer() {
+		@Override
+		public void accept(int key) {
+			entries.remove(key);
+			evictions.increment();
+		}
+	};
+
+	public FactorizationCache() {
+		this(new PrimeFactor(), new LruEvictionPolicy(DEFAULT_MAXIMUM_SIZE));
+	}
+
+	private FactorizationCache(PrimeFactor primeFactor, EvictionPolicy policy) {
+		this.primeFactor = primeFactor;
+		this.policy = policy;
+	}
+
+	public static FactorizationCache lru(PrimeFactor primeFactor, int maximumSize) {
+		return new FactorizationCache(primeFactor, new LruEvictionPolicy(maximumSize));
+	}
+
+	public static FactorizationCache tinyLfu(PrimeFactor primeFactor, int maximumSize) {
+		return new FactorizationCache(primeFactor, new TinyLfuEvictionPolicy(maximumSize));
+	}
+
+	/**
+	 * The policy decides the bound; it must not be shared with another cache.
+	 */
+	public static FactorizationCache using(PrimeFactor primeFactor, EvictionPolicy policy) {
+		return new FactorizationCache(primeFactor, policy);
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void boundedAndCounted() {
+		PrimeFactor primeFactor = new PrimeFactor();
+		FactorizationCache lru = lru(primeFactor, 100);
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(primeFactor.getPrimeFactors(i), lru.getPrimeFactors(i));
+		}
+		Assert.assertEquals(100, lru.size());
+		Assert.assertEquals(900, lru.evictionCount());
+		Assert.assertEquals(Arrays.asList(3, 3, 3, 37), lru.getPrimeFactors(999));
+		Assert.assertEquals(1, lru.hitCount());
+		Assert.assertEquals(1000, lru.missCount());
+
+		// one hot key survives a scan under TinyLFU but not under LRU
+		FactorizationCache tinyLfu = tinyLfu(primeFactor, 100);
+		lru = lru(primeFactor, 100);
+		for (int round = 0; round < 20; round++) {
+			tinyLfu.getPrimeFactors(Integer.MAX_VALUE);
+			lru.getPrimeFactors(Integer.MAX_VALUE);
+		}
+		for (int i = 0; i < 1000; i++) {
+			tinyLfu.getPrimeFactors(i);
+			lru.getPrimeFactors(i);
+		}
+		long tinyLfuHits = tinyLfu.hitCount();
+		long lruHits = lru.hitCount();
+		tinyLfu.getPrimeFactors(Integer.MAX_VALUE);
+		lru.getPrimeFactors(Integer.MAX_VALUE);
+		Assert.assertEquals(tinyLfuHits + 1, tinyLfu.hitCount());
+		Assert.assertEquals(lruHits, lru.hitCount());
+		Assert.assertTrue(tinyLfu.size() <= 100);
+
+		IntFactorization factorization = tinyLfu.factorize(Integer.MAX_VALUE, new IntFactorization());
+		Assert.assertEquals(1, factorization.size());
+		Assert.assertEquals(Integer.MAX_VALUE, factorization.prime(0));
+	}
+
+	public List<Integer> getPrimeFactors(int i) {
+		return factorize(i, new IntFactorization()).toList();
+	}
+
+	/**
+	 * Same as {@link PrimeFactor#factorize(int, IntFactorization)}, served from the cache when possible.
+	 */
+	public IntFactorization factorize(int i, IntFactorization into) {
+		int[] pairs = lookup(i);
+		into.reset(i);
+		for (int k = 0; k < pairs.length; k += 2) {
+			into.add(pairs[k], pairs[k + 1]);
+		}
+		return into;
+	}
+
+	private int[] lookup(int i) {
+		int[] pairs = entries.get(i);
+		if (pairs != null) {
+			hits.increment();
+			if (policyLock.tryLock()) {
+				try {
+					policy.recordAccess(i);
+				} finally {
+					policyLock.unlock();
+				}
+			}
+			return pairs;
+		}
+		misses.increment();
+		int[] buffer = new int[2 * IntFactorization.MAX_DISTINCT_PRIMES];
+		pairs = Arrays.copyOf(buffer, 2 * primeFactor.factorize(i, buffer, 0));
+		policyLock.lock();
+		try {
+			// another thread may have computed the same value meanwhile, the policy already knows it then
+			if (entries.putIfAbsent(i, pairs) == null) {
+				policy.admit(i, evict);
+			}
+		} finally {
+			policyLock.unlock();
+		}
+		return pairs;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public long hitCount() {
+		return hits.sum();
+	}
+
+	public long missCount() {
+		return misses.sum();
+	}
+
+	public long evictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return hits / (hits + misses), or 0 before the first request
+	 */
+	public double hitRate() {
+		long hitCount = hits.sum();
+		long requestCount = hitCount + misses.sum();
+		return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+	}
+}
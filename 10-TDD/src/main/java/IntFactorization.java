@@ -0,0 +1,130 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prime factorization of one int as (prime, exponent) pairs in ascending prime order.
+ * <p>
+ * Instances are mutable and meant to be reused: {@link PrimeFactor#factorize(int, IntFactorization)}
+ * overwrites the previous content, so a loop over millions of values can run on one instance without
+ * allocating anything.
+ */
+public final class IntFactorization {
+
+	/** 2*3*5*7*11*13*17*19*23 is the largest primorial that still fits an int. */
+	public static final int MAX_DISTINCT_PRIMES = 9;
+
+	private final int[] primes = new int[MAX_DISTINCT_PRIMES];
+	private final int[] exponents = new int[MAX_DISTINCT_PRIMES];
+	private int size;
+	private int value;
+
+	/**
+	 * @return the value that was factored last
+	 */
+	public int value() {
+		return value;
+	}
+
+	/**
+	 * @return number of distinct primes, 0 for values below 2
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int prime(int k) {
+		checkIndex(k);
+		return primes[k];
+	}
+
+	public int exponent(int k) {
+		checkIndex(k);
+		return exponents[k];
+	}
+
+	/**
+	 * @return the factors expanded by multiplicity, the way {@link PrimeFactor#getPrimeFactors(int)} returns them
+	 */
+	public List<Integer> toList() {
+		List<Integer> factorList = new ArrayList<Integer>();
+		for (int k = 0; k < size; k++) {
+			for (int e = 0; e < exponents[k]; e++) {
+				factorList.add(primes[k]);
+			}
+		}
+		return factorList;
+	}
+
+	void reset(int value) {
+		this.value = value;
+		this.size = 0;
+	}
+
+	/**
+	 * Primes have to arrive in ascending order; a repeat of the last prime bumps its exponent.
+	 */
+	void add(int prime) {
+		if (size > 0 && primes[size - 1] == prime) {
+			exponents[size - 1]++;
+		} else {
+			primes[size] = prime;
+			exponents[size] = 1;
+			size++;
+		}
+	}
+
+	void add(int prime, int exponent) {
+		primes[size] = prime;
+		exponents[size] = exponent;
+		size++;
+	}
+
+	private void checkIndex(int k) {
+		if (k < 0 || k >= size) {
+			throw new IndexOutOfBoundsException("prime " + k + " of " + size);
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof IntFactorization)) {
+			return false;
+		}
+		IntFactorization other = (IntFactorization) obj;
+		if (value != other.value || size != other.size) {
+			return false;
+		}
+		for (int k = 0; k < size; k++) {
+			if (primes[k] != other.primes[k] || exponents[k] != other.exponents[k]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder().append(value).append(" = ");
+		if (size == 0) {
+			return sb.append(value).toString();
+		}
+		for (int k = 0; k < size; k++) {
+			if (k > 0) {
+				sb.append(" * ");
+			}
+			sb.append(primes[k]);
+			if (exponents[k] > 1) {
+				sb.append('^').append(exponents[k]);
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,34 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Keeps the most recently used keys.
+ */
+public class LruEvictionPolicy implements EvictionPolicy {
+
+	private final int maximumSize;
+	private final LinkedHashMap<Integer, Boolean> order = new LinkedHashMap<Integer, Boolean>(16, 0.75f, true);
+
+	public LruEvictionPolicy(int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+		}
+		this.maximumSize = maximumSize;
+	}
+
+	@Override
+	public void recordAccess(int key) {
+		order.get(key);
+	}
+
+	@Override
+	public void admit(int key, IntConsumer evict) {
+		order.put(key, Boolean.TRUE);
+		if (order.size() > maximumSize) {
+			Iterator<Integer> eldest = order.keySet().iterator();
+			evict.accept(eldest.next());
+			eldest.remove();
+		}
+	}
+}
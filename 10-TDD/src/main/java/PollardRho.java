@@ -0,0 +1,331 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Primality testing and splitting for values too large for trial division.
+ * <p>
+ * Miller-Rabin with the first twelve prime bases is deterministic for every
+ * value below 3.3 * 10^24, which covers all of long. Above that bound no fixed
+ * set of bases is proven, so BigInteger.isProbablePrime decides, with an error
+ * probability below 2^-100. Composites are split with
+ * Brent's variant of Pollard's rho. The long path runs in Montgomery form so no
+ * step needs a 128-bit division.
+ */
+final class PollardRho {
+
+	private static final long[] WITNESSES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37};
+
+	private static final BigInteger[] BIG_WITNESSES;
+
+	// smallest strong pseudoprime to all twelve bases, so every smaller value is decided exactly
+	private static final BigInteger DETERMINISTIC_BOUND = new BigInteger("3317044064679887385961981");
+
+	private static final int CERTAINTY = 100;
+
+	// number of rho steps whose differences are multiplied together before taking one gcd
+	private static final int BATCH = 128;
+
+	static {
+		BIG_WITNESSES = new BigInteger[WITNESSES.length];
+		for (int i = 0; i < WITNESSES.length; i++) {
+			BIG_WITNESSES[i] = BigInteger.valueOf(WITNESSES[i]);
+		}
+	}
+
+	private PollardRho() {
+	}
+
+	static boolean isPrime(long n) {
+		if (n < 2) {
+			return false;
+		}
+		for (long p : WITNESSES) {
+			if (n % p == 0) {
+				return n == p;
+			}
+		}
+		if (n < 41 * 41) {
+			return true;
+		}
+		Montgomery m = new Montgomery(n);
+		long d = n - 1;
+		int s = Long.numberOfTrailingZeros(d);
+		d >>= s;
+		for (long a : WITNESSES) {
+			if (!m.passesWitness(a, d, s)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the prime factors of n (with multiplicity, in no particular order) to factors.
+	 */
+	static void factor(long n, List<Long> factors) {
+		while (n > 1 && (n & 1) == 0) {
+			factors.add(2L);
+			n >>= 1;
+		}
+		if (n == 1) {
+			return;
+		}
+		if (isPrime(n)) {
+			factors.add(n);
+			return;
+		}
+		long d = split(n);
+		factor(d, factors);
+		factor(n / d, factors);
+	}
+
+	/**
+	 * Exact below 3.3 * 10^24, probabilistic above (see the class comment).
+	 */
+	static boolean isPrime(BigInteger n) {
+		if (n.bitLength() < 63) {
+			return isPrime(n.longValue());
+		}
+		if (n.compareTo(DETERMINISTIC_BOUND) >= 0) {
+			// random bases plus a Lucas test, which no crafted pseudoprime to fixed bases can fool
+			return n.isProbablePrime(CERTAINTY);
+		}
+		if (!n.testBit(0)) {
+			return false;
+		}
+		BigInteger nMinusOne = n.subtract(BigInteger.ONE);
+		int s = nMinusOne.getLowestSetBit();
+		BigInteger d = nMinusOne.shiftRight(s);
+		for (BigInteger a : BIG_WITNESSES) {
+			BigInteger x = a.modPow(d, n);
+			if (x.equals(BigInteger.ONE) || x.equals(nMinusOne)) {
+				continue;
+			}
+			boolean composite = true;
+			for (int r = 1; r < s; r++) {
+				x = x.multiply(x).mod(n);
+				if (x.equals(nMinusOne)) {
+					composite = false;
+					break;
+				}
+			}
+			if (composite) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the prime factors of n (with multiplicity, in no particular order) to factors.
+	 */
+	static void factor(BigInteger n, List<BigInteger> factors) {
+		if (n.bitLength() < 63) {
+			long value = n.longValue();
+			if (value > 1) {
+				List<Long> longFactors = new ArrayList<Long>();
+				factor(value, longFactors);
+				for (Long p : longFactors) {
+					factors.add(BigInteger.valueOf(p));
+				}
+			}
+			return;
+		}
+		int twos = n.getLowestSetBit();
+		for (int i = 0; i < twos; i++) {
+			factors.add(BigInteger.valueOf(2));
+		}
+		n = n.shiftRight(twos);
+		if (n.equals(BigInteger.ONE)) {
+			return;
+		}
+		if (isPrime(n)) {
+			factors.add(n);
+			return;
+		}
+		BigInteger d = split(n);
+		factor(d, factors);
+		factor(n.divide(d), factors);
+	}
+
+	/**
+	 * Brent's cycle finding on x -> x^2 + c, with the gcd taken once per BATCH steps.
+	 * n must be odd and composite.
+	 */
+	private static long split(long n) {
+		Montgomery m = new Montgomery(n);
+		for (long c = 1; ; c++) {
+			long cm = m.toMontgomery(c);
+			long y = m.toMontgomery(2);
+			long x = y;
+			long ys = y;
+			long q = m.one;
+			long g = 1;
+			for (int r = 1; g == 1; r <<= 1) {
+				x = y;
+				for (int i = 0; i < r; i++) {
+					y = m.add(m.multiply(y, y), cm);
+				}
+				for (int k = 0; k < r && g == 1; k += BATCH) {
+					ys = y;
+					int steps = Math.min(BATCH, r - k);
+					for (int i = 0; i < steps; i++) {
+						y = m.add(m.multiply(y, y), cm);
+						q = m.multiply(q, x > y ? x - y : y - x);
+					}
+					g = gcd(q, n);
+				}
+			}
+			if (g == n) {
+				// the batch overshot, replay it one step at a time
+				do {
+					ys = m.add(m.multiply(ys, ys), cm);
+					g = gcd(x > ys ? x - ys : ys - x, n);
+				} while (g == 1);
+			}
+			if (g != n) {
+				return g;
+			}
+		}
+	}
+
+	private static BigInteger split(BigInteger n) {
+		BigInteger two = BigInteger.valueOf(2);
+		for (long c = 1; ; c++) {
+			BigInteger bigC = BigInteger.valueOf(c);
+			BigInteger y = two;
+			BigInteger x = y;
+			BigInteger ys = y;
+			BigInteger q = BigInteger.ONE;
+			BigInteger g = BigInteger.ONE;
+			for (int r = 1; g.equals(BigInteger.ONE); r <<= 1) {
+				x = y;
+				for (int i = 0; i < r; i++) {
+					y = y.multiply(y).add(bigC).mod(n);
+				}
+				for (int k = 0; k < r && g.equals(BigInteger.ONE); k += BATCH) {
+					ys = y;
+					int steps = Math.min(BATCH, r - k);
+					for (int i = 0; i < steps; i++) {
+						y = y.multiply(y).add(bigC).mod(n);
+						q = q.multiply(x.subtract(y).abs()).mod(n);
+					}
+					g = q.gcd(n);
+				}
+			}
+			if (g.equals(n)) {
+				do {
+					ys = ys.multiply(ys).add(bigC).mod(n);
+					g = x.subtract(ys).abs().gcd(n);
+				} while (g.equals(BigInteger.ONE));
+			}
+			if (!g.equals(n)) {
+				return g;
+			}
+		}
+	}
+
+	private static long gcd(long a, long b) {
+		if (a == 0) {
+			return b;
+		}
+		if (b == 0) {
+			return a;
+		}
+		int shift = Long.numberOfTrailingZeros(a | b);
+		a >>= Long.numberOfTrailingZeros(a);
+		do {
+			b >>= Long.numberOfTrailingZeros(b);
+			if (a > b) {
+				long t = a;
+				a = b;
+				b = t;
+			}
+			b -= a;
+		} while (b != 0);
+		return a << shift;
+	}
+
+	/**
+	 * Montgomery arithmetic modulo an odd n below 2^63. Residues are kept in [0, n).
+	 */
+	private static final class Montgomery {
+		final long n;
+		final long nInverse;
+		final long one;
+		final long rSquared;
+
+		Montgomery(long n) {
+			this.n = n;
+			long inverse = n;
+			for (int i = 0; i < 5; i++) {
+				inverse *= 2 - n * inverse;
+			}
+			this.nInverse = inverse;
+			this.one = Long.remainderUnsigned(-n, n);
+			long r = one;
+			for (int i = 0; i < 64; i++) {
+				r = add(r, r);
+			}
+			this.rSquared = r;
+		}
+
+		long toMontgomery(long a) {
+			return multiply(a % n, rSquared);
+		}
+
+		long add(long a, long b) {
+			long sum = a + b;
+			return Long.compareUnsigned(sum, n) >= 0 ? sum - n : sum;
+		}
+
+		long multiply(long a, long b) {
+			return reduce(unsignedMultiplyHigh(a, b), a * b);
+		}
+
+		private long reduce(long high, long low) {
+			long q = low * nInverse;
+			long r = high - unsignedMultiplyHigh(q, n);
+			return r < 0 ? r + n : r;
+		}
+
+		boolean passesWitness(long a, long d, int s) {
+			long x = toMontgomery(a);
+			if (x == 0) {
+				return true;
+			}
+			long minusOne = n - one;
+			long result = one;
+			for (long e = d; e != 0; e >>>= 1) {
+				if ((e & 1) != 0) {
+					result = multiply(result, x);
+				}
+				x = multiply(x, x);
+			}
+			if (result == one || result == minusOne) {
+				return true;
+			}
+			for (int r = 1; r < s; r++) {
+				result = multiply(result, result);
+				if (result == minusOne) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	// Math.multiplyHigh only exists from Java 9 on
+	private static long unsignedMultiplyHigh(long x, long y) {
+		long x1 = x >> 32;
+		long x2 = x & 0xFFFFFFFFL;
+		long y1 = y >> 32;
+		long y2 = y & 0xFFFFFFFFL;
+		long z2 = x2 * y2;
+		long t = x1 * y2 + (z2 >>> 32);
+		long z1 = (t & 0xFFFFFFFFL) + x2 * y1;
+		long signedHigh = x1 * y1 + (t >> 32) + (z1 >> 32);
+		return signedHigh + ((x >> 63) & y) + ((y >> 63) & x);
+	}
+}
@@ -1,5 +1,7 @@
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.Test;
@@ -8,6 +10,32 @@ import junit.framework.Assert;
 
 public class PrimeFactor {
 
+	/** No int has more prime factors than 2^30 does. */
+	public static final int MAX_FACTORS = 31;
+
+	// small factors are cheaper to strip by division than to find with Pollard's rho
+	private static final int TRIAL_DIVISION_BOUND = 1 << 10;
+
+	private static final SmallestPrimeFactorSieve DEFAULT_SIEVE = new SmallestPrimeFactorSieve(SmallestPrimeFactorSieve.DEFAULT_LIMIT);
+
+	private final SmallestPrimeFactorSieve sieve;
+
+	public PrimeFactor() {
+		this(DEFAULT_SIEVE);
+	}
+
+	private PrimeFactor(SmallestPrimeFactorSieve sieve) {
+		this.sieve = sieve;
+	}
+
+	/**
+	 * Values up to sieveLimit are factored by table lookup, anything above falls back to trial division.
+	 * The table is only built when the first value is factored.
+	 */
+	public static PrimeFactor withSieveLimit(int sieveLimit) {
+		return new PrimeFactor(new SmallestPrimeFactorSieve(sieveLimit));
+	}
+
 	@SuppressWarnings("deprecation")
 	@Test
 	public void publ() {
@@ -26,8 +54,80 @@ public class PrimeFactor {
 		Assert.assertEquals(getPrimeFactors(2*2*3*3*5*5*9*9*13), Arrays.asList(2,2,3,3,3,3,3,3,5,5,13));
 	}
 
+	@SuppressWarnings("deprecation")
+	@Test
+	public void sieveAndTrialDivisionAgree() {
+		PrimeFactor smallSieve = withSieveLimit(100);
+		for (int i = 0; i < 20000; i++) {
+			Assert.assertEquals(smallSieve.getPrimeFactors(i), getPrimeFactors(i));
+		}
+		Assert.assertEquals(smallSieve.getPrimeFactors(Integer.MAX_VALUE), Arrays.asList(Integer.MAX_VALUE));
+		Assert.assertEquals(smallSieve.getPrimeFactors(2147483646), Arrays.asList(2,3,3,7,11,31,151,331));
+		Assert.assertEquals(smallSieve.getPrimeFactors(46337*46337), Arrays.asList(46337,46337));
+		Assert.assertEquals(getPrimeFactors(46337*46337), Arrays.asList(46337,46337));
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void factorizeIntoReusableBuffers() {
+		IntFactorization factorization = new IntFactorization();
+		int[] pairs = new int[2 * IntFactorization.MAX_DISTINCT_PRIMES];
+		for (int i : new int[] {0, 1, 2, 12, 97, 2*2*3*3*5*5*9*9*13, 2*3*5*7*11*13*17*19*23, 1 << 30, Integer.MAX_VALUE, 2147483646}) {
+			Assert.assertSame(factorization, factorize(i, factorization));
+			Assert.assertEquals(i, factorization.value());
+			int pairCount = factorize(i, pairs, 0);
+			Assert.assertEquals(factorization.size(), pairCount);
+			for (int k = 0; k < pairCount; k++) {
+				Assert.assertEquals(factorization.prime(k), pairs[2*k]);
+				Assert.assertEquals(factorization.exponent(k), pairs[2*k+1]);
+			}
+			Assert.assertEquals(getPrimeFactors(i), factorization.toList());
+		}
+		Assert.assertEquals("1008 = 2^4 * 3^2 * 7", factorize(1008, factorization).toString());
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void longAndBigInteger() {
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(toLongs(getPrimeFactors(i)), getPrimeFactors((long) i));
+		}
+		Assert.assertEquals(getPrimeFactors(Long.MAX_VALUE), Arrays.asList(7L,7L,73L,127L,337L,92737L,649657L));
+		Assert.assertEquals(getPrimeFactors(2147483647L*2147483629L), Arrays.asList(2147483629L,2147483647L));
+		Assert.assertEquals(getPrimeFactors(3037000493L*3037000493L), Arrays.asList(3037000493L,3037000493L));
+		Assert.assertEquals(getPrimeFactors(9223372036854775783L), Arrays.asList(9223372036854775783L));
+		Assert.assertEquals(getPrimeFactors(1000000007L*1000000007L*3), Arrays.asList(3L,1000000007L,1000000007L));
+
+		BigInteger mersenne61 = BigInteger.ONE.shiftLeft(61).subtract(BigInteger.ONE);
+		BigInteger mersenne89 = BigInteger.ONE.shiftLeft(89).subtract(BigInteger.ONE);
+		BigInteger p = BigInteger.valueOf(1000003);
+		Assert.assertEquals(getPrimeFactors(mersenne61.multiply(p)), Arrays.asList(p, mersenne61));
+		Assert.assertEquals(getPrimeFactors(mersenne89.multiply(p).multiply(p)), Arrays.asList(p, p, mersenne89));
+		Assert.assertEquals(getPrimeFactors(BigInteger.valueOf(2*2*3*3*5*5*9*9*13)), toBigIntegers(getPrimeFactors(2*2*3*3*5*5*9*9*13)));
+		Assert.assertEquals(getPrimeFactors(BigInteger.ONE), Arrays.asList());
+
+		// strong pseudoprime to the twelve fixed Miller-Rabin bases
+		BigInteger psi12 = new BigInteger("3317044064679887385961981");
+		Assert.assertEquals(getPrimeFactors(psi12), Arrays.asList(new BigInteger("1287836182261"), new BigInteger("2575672364521")));
+	}
+
+	private static List<Long> toLongs(List<Integer> factors) {
+		List<Long> longs = new ArrayList<Long>();
+		for (Integer factor : factors) {
+			longs.add(factor.longValue());
+		}
+		return longs;
+	}
+
+	private static List<BigInteger> toBigIntegers(List<Integer> factors) {
+		List<BigInteger> bigIntegers = new ArrayList<BigInteger>();
+		for (Integer factor : factors) {
+			bigIntegers.add(BigInteger.valueOf(factor));
+		}
+		return bigIntegers;
+	}
+
 	public List<Integer> getPrimeFactors(int i) {
-		List<Integer> factorList = new ArrayList<Integer>(); 
 
 		//			while (i%2==0){
 		//				factorList.add(2);
@@ -45,14 +145,142 @@ public class PrimeFactor {
 		//				factorList.add(i);
 
 		// after refactoring the code
-		int j=2;
+		//		int j=2;
+		//		while(i>1){
+		//			while (i%j==0){
+		//				factorList.add(j);
+		//				i=i/j;
+		//			}
+		//			j++;
+		//		}
+
+		// after introducing the sieve the work moved to factorize, this only expands its (prime, exponent) pairs
+		return factorize(i, new IntFactorization()).toList();
+	}
+
+	/**
+	 * Overwrites into with the factorization of i and returns it. Allocates nothing, so one instance can be
+	 * reused across any number of calls.
+	 */
+	public IntFactorization factorize(int i, IntFactorization into) {
+		into.reset(i);
+		int p=1;
 		while(i>1){
+			p=smallestPrimeFactor(i, p);
+			into.add(p);
+			i=i/p;
+		}
+		return into;
+	}
+
+	/**
+	 * Writes the factorization of i into pairs as prime, exponent, prime, exponent, ... starting at offset.
+	 * At most 2 * {@link IntFactorization#MAX_DISTINCT_PRIMES} entries are written.
+	 * @return the number of (prime, exponent) pairs written
+	 */
+	public int factorize(int i, int[] pairs, int offset) {
+		int end = offset;
+		int p=1;
+		while(i>1){
+			p=smallestPrimeFactor(i, p);
+			if (end > offset && pairs[end-2] == p) {
+				pairs[end-1]++;
+			} else {
+				pairs[end++]=p;
+				pairs[end++]=1;
+			}
+			i=i/p;
+		}
+		return (end-offset)/2;
+	}
+
+	/**
+	 * Writes the prime factors of i into factors, starting at offset, in the same order as {@link #getPrimeFactors(int)}.
+	 * At most {@link #MAX_FACTORS} entries are written.
+	 * @return the number of factors written
+	 */
+	public int getPrimeFactors(int i, int[] factors, int offset) {
+		int count = offset;
+		int p=1;
+		while(i>1){
+			p=smallestPrimeFactor(i, p);
+			factors[count++]=p;
+			i=i/p;
+		}
+		return count-offset;
+	}
+
+	/**
+	 * Smallest prime factor of i (i > 1), given that i has no prime factor below the previous one found.
+	 * Table lookup up to the sieve limit; above it trial division, resumed from the previous factor and
+	 * only up to sqrt(i) since whatever is left after that is prime.
+	 */
+	private int smallestPrimeFactor(int i, int previous) {
+		if (i<=sieve.getLimit()){
+			return sieve.smallestPrimeFactor(i);
+		}
+		for (int j=Math.max(2, previous); j<=i/j; j+= j==2 ? 1 : 2){
+			if (i%j==0){
+				return j;
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * Same contract as {@link #getPrimeFactors(int)}: prime factors in ascending order, repeated by multiplicity.
+	 * Values that fit an int take the int path, bigger ones are split with Pollard's rho.
+	 */
+	public List<Long> getPrimeFactors(long i) {
+		List<Long> factorList = new ArrayList<Long>();
+		if (i < 2) {
+			return factorList;
+		}
+		for (long j = 2; j < TRIAL_DIVISION_BOUND && i > Integer.MAX_VALUE; j += j==2 ? 1 : 2) {
 			while (i%j==0){
 				factorList.add(j);
 				i=i/j;
 			}
-			j++;
-		}		
+		}
+		if (i <= Integer.MAX_VALUE) {
+			for (Integer factor : getPrimeFactors((int) i)) {
+				factorList.add(factor.longValue());
+			}
+			return factorList;
+		}
+		PollardRho.factor(i, factorList);
+		Collections.sort(factorList);
+		return factorList;
+	}
+
+	/**
+	 * Same contract as {@link #getPrimeFactors(int)}. Values below 2^63 take the long path; larger ones are
+	 * split with Pollard's rho. Below 3.3 * 10^24 primality is decided exactly by Miller-Rabin over the first
+	 * twelve prime bases; at or above it by BigInteger.isProbablePrime, so a factor reported as prime is
+	 * composite with probability below 2^-100.
+	 */
+	public List<BigInteger> getPrimeFactors(BigInteger i) {
+		List<BigInteger> factorList = new ArrayList<BigInteger>();
+		if (i.signum() < 0) {
+			return factorList;
+		}
+		if (i.bitLength() < 63) {
+			for (Long factor : getPrimeFactors(i.longValue())) {
+				factorList.add(BigInteger.valueOf(factor));
+			}
+			return factorList;
+		}
+		for (int j = 2; j < TRIAL_DIVISION_BOUND && i.bitLength() >= 63; j += j==2 ? 1 : 2) {
+			BigInteger divisor = BigInteger.valueOf(j);
+			BigInteger[] quotientAndRemainder = i.divideAndRemainder(divisor);
+			while (quotientAndRemainder[1].signum() == 0) {
+				factorList.add(divisor);
+				i = quotientAndRemainder[0];
+				quotientAndRemainder = i.divideAndRemainder(divisor);
+			}
+		}
+		PollardRho.factor(i, factorList);
+		Collections.sort(factorList);
 		return factorList;
 	}
 
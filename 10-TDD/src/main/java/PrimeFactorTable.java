@@ -0,0 +1,53 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prime factors of a batch of values, flattened into one int array.
+ * <p>
+ * The factors of the value at index i are factors[offsets[i]] .. factors[offsets[i + 1] - 1],
+ * in the same order {@link PrimeFactor#getPrimeFactors(int)} returns them.
+ */
+public final class PrimeFactorTable {
+
+	private final int[] offsets;
+	private final int[] factors;
+
+	PrimeFactorTable(int[] offsets, int[] factors) {
+		this.offsets = offsets;
+		this.factors = factors;
+	}
+
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	public int factorCount(int index) {
+		return offsets[index + 1] - offsets[index];
+	}
+
+	public int factor(int index, int k) {
+		if (k < 0 || k >= factorCount(index)) {
+			throw new IndexOutOfBoundsException("factor " + k + " of value " + index);
+		}
+		return factors[offsets[index] + k];
+	}
+
+	public List<Integer> getPrimeFactors(int index) {
+		List<Integer> factorList = new ArrayList<Integer>();
+		for (int k = offsets[index]; k < offsets[index + 1]; k++) {
+			factorList.add(factors[k]);
+		}
+		return factorList;
+	}
+
+	/**
+	 * Backing arrays, not copies: callers that want to scan everything can walk them directly.
+	 */
+	public int[] offsets() {
+		return offsets;
+	}
+
+	public int[] factors() {
+		return factors;
+	}
+}
@@ -0,0 +1,452 @@
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.read.ListAppender;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import junit.framework.Assert;
+
+/**
+ * Hands logging events over to one worker thread through a lock-free ring buffer.
+ * <p>
+ * The calling thread only claims a slot and stores the event; the attached appenders run on the worker,
+ * which takes events off the ring in batches and parks while the ring is empty. Unlike logback's own
+ * AsyncAppender nothing is formatted on the calling thread: only the thread name and the MDC are captured
+ * there, the message is formatted by the worker. Arguments passed to the logger must therefore not be
+ * mutated after the call. Caller data is not captured either.
+ * <p>
+ * What happens when the ring is full is decided by the {@link OverflowPolicy}.
+ */
+public class RingBufferAsyncAppender extends UnsynchronizedAppenderBase<ILoggingEvent>
+		implements AppenderAttachable<ILoggingEvent> {
+
+	public enum OverflowPolicy {
+		/** The caller waits for a free slot, nothing is lost. */
+		BLOCK,
+		/** The event is dropped. */
+		DROP,
+		/** TRACE, DEBUG and INFO events are dropped, WARN and ERROR events wait for a free slot. */
+		DROP_BELOW_WARN
+	}
+
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+	private static final long STOP_TIMEOUT_MILLIS = 1000;
+
+	private final AppenderAttachableImpl<ILoggingEvent> appenders = new AppenderAttachableImpl<ILoggingEvent>();
+	// next sequence to claim, shared by all producers
+	private final AtomicLong tail = new AtomicLong();
+	// next sequence to consume, only ever advanced by the worker
+	private final AtomicLong head = new AtomicLong();
+	private final LongAdder dropped = new LongAdder();
+	// producers between admission and storing their event; stop waits for them before the last drain
+	private final AtomicInteger admitted = new AtomicInteger();
+
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+	private AtomicReferenceArray<ILoggingEvent> ring;
+	private int mask;
+	private Thread worker;
+	private volatile boolean running;
+	private volatile boolean sleeping;
+
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * @return number of events dropped because the ring was full or the appender was stopping
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void dropsOnlyWhenFull() throws InterruptedException {
+		LoggerContext context = new LoggerContext();
+		Logger logger = context.getLogger("ring");
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		ListAppender<ILoggingEvent> list = new ListAppender<ILoggingEvent>() {
+			@Override
+			protected void append(ILoggingEvent event) {
+				entered.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.append(event);
+			}
+		};
+		list.setContext(context);
+		list.start();
+
+		RingBufferAsyncAppender ring = new RingBufferAsyncAppender();
+		ring.setContext(context);
+		ring.setBufferSize(4);
+		ring.setOverflowPolicy(OverflowPolicy.DROP);
+		ring.addAppender(list);
+		ring.start();
+		Assert.assertTrue(ring.isStarted());
+
+		// the worker holds event 0 inside the blocked appender, events 1 to 4 fill the ring, 5 is dropped
+		ring.doAppend(new LoggingEvent(null, logger, Level.INFO, "event {}", null, new Object[] {0}));
+		Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+		for (int i = 1; i <= 5; i++) {
+			ring.doAppend(new LoggingEvent(null, logger, Level.INFO, "event {}", null, new Object[] {i}));
+		}
+		Assert.assertEquals(1, ring.getDroppedCount());
+		release.countDown();
+		ring.stop();
+
+		Assert.assertEquals(5, list.list.size());
+		for (int i = 0; i < 5; i++) {
+			Assert.assertEquals("event " + i, list.list.get(i).getFormattedMessage());
+		}
+		Assert.assertFalse(list.isStarted());
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void blockingDeliversEverything() throws InterruptedException {
+		LoggerContext context = new LoggerContext();
+		final Logger logger = context.getLogger("ring");
+		final int[] next = new int[4];
+		final boolean[] ordered = {true};
+		AppenderBase<ILoggingEvent> check = new AppenderBase<ILoggingEvent>() {
+			@Override
+			protected void append(ILoggingEvent event) {
+				Object[] args = event.getArgumentArray();
+				int producer = (Integer) args[0];
+				ordered[0] &= next[producer]++ == (Integer) args[1];
+			}
+		};
+		check.setContext(context);
+		check.start();
+
+		final RingBufferAsyncAppender ring = new RingBufferAsyncAppender();
+		ring.setContext(context);
+		ring.setBufferSize(16);
+		ring.setBatchSize(5);
+		ring.addAppender(check);
+		ring.start();
+
+		Thread[] producers = new Thread[next.length];
+		for (int p = 0; p < producers.length; p++) {
+			final int producer = p;
+			producers[p] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 10000; i++) {
+						ring.doAppend(new LoggingEvent(null, logger, Level.DEBUG, "{} {}", null, new Object[] {producer, i}));
+					}
+				}
+			};
+			producers[p].start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		ring.stop();
+
+		Assert.assertTrue(ordered[0]);
+		for (int count : next) {
+			Assert.assertEquals(10000, count);
+		}
+		Assert.assertEquals(0, ring.getDroppedCount());
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void stopDeliversEverythingAdmitted() throws InterruptedException {
+		LoggerContext context = new LoggerContext();
+		final Logger logger = context.getLogger("ring");
+		final AtomicLong delivered = new AtomicLong();
+		AppenderBase<ILoggingEvent> count = new AppenderBase<ILoggingEvent>() {
+			@Override
+			protected void append(ILoggingEvent event) {
+				delivered.incrementAndGet();
+			}
+		};
+		count.setContext(context);
+		count.start();
+
+		final AtomicLong appended = new AtomicLong();
+		final RingBufferAsyncAppender ring = new RingBufferAsyncAppender() {
+			@Override
+			protected void append(ILoggingEvent event) {
+				appended.incrementAndGet();
+				super.append(event);
+			}
+		};
+		ring.setContext(context);
+		ring.setBufferSize(16);
+		ring.addAppender(count);
+		ring.start();
+
+		final CountDownLatch started = new CountDownLatch(4);
+		Thread[] producers = new Thread[4];
+		for (int p = 0; p < producers.length; p++) {
+			producers[p] = new Thread() {
+				@Override
+				public void run() {
+					started.countDown();
+					for (int i = 0; i < 100000; i++) {
+						ring.doAppend(new LoggingEvent(null, logger, Level.INFO, "event", null, null));
+					}
+				}
+			};
+			producers[p].start();
+		}
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		ring.stop();
+		for (Thread producer : producers) {
+			producer.join();
+		}
+
+		// events appended while stopping are either delivered or counted as dropped, never lost silently
+		Assert.assertEquals(appended.get(), delivered.get() + ring.getDroppedCount());
+	}
+
+	@Override
+	public void start() {
+		if (isStarted()) {
+			return;
+		}
+		if (bufferSize < 2 || Integer.bitCount(bufferSize) != 1) {
+			addError("bufferSize must be a power of two of at least 2: " + bufferSize);
+			return;
+		}
+		if (batchSize < 1) {
+			addError("batchSize must be positive: " + batchSize);
+			return;
+		}
+		if (!appenders.iteratorForAppenders().hasNext()) {
+			addError("No attached appenders found.");
+			return;
+		}
+		ring = new AtomicReferenceArray<ILoggingEvent>(bufferSize);
+		mask = bufferSize - 1;
+		tail.set(0);
+		head.set(0);
+		running = true;
+		worker = new Thread(new Worker(), "RingBufferAsyncAppender-Worker-" + getName());
+		worker.setDaemon(true);
+		super.start();
+		worker.start();
+	}
+
+	@Override
+	public void stop() {
+		if (!isStarted()) {
+			return;
+		}
+		// no new events from here on; the worker waits for producers already admitted, drains and exits
+		running = false;
+		super.stop();
+		LockSupport.unpark(worker);
+		try {
+			worker.join(STOP_TIMEOUT_MILLIS);
+			if (worker.isAlive()) {
+				addWarn("Worker did not drain within " + STOP_TIMEOUT_MILLIS + " ms, " + (tail.get() - head.get()) + " events lost.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		appenders.detachAndStopAllAppenders();
+	}
+
+	@Override
+	protected void append(ILoggingEvent event) {
+		// the worker sees another thread, so these have to be taken now; the message is formatted later
+		event.getThreadName();
+		event.getMDCPropertyMap();
+
+		admitted.incrementAndGet();
+		try {
+			if (!running) {
+				// passed the started check just before stop, the worker may already be gone
+				dropped.increment();
+				return;
+			}
+			enqueue(event);
+		} finally {
+			admitted.decrementAndGet();
+		}
+	}
+
+	private void enqueue(ILoggingEvent event) {
+		long sequence;
+		while (true) {
+			sequence = tail.get();
+			if (sequence - head.get() < bufferSize) {
+				if (tail.compareAndSet(sequence, sequence + 1)) {
+					break;
+				}
+				continue;
+			}
+			if (mustDrop(event)) {
+				dropped.increment();
+				return;
+			}
+			LockSupport.unpark(worker);
+			LockSupport.parkNanos(FULL_PARK_NANOS);
+		}
+		ring.lazySet((int) sequence & mask, event);
+		if (sleeping) {
+			LockSupport.unpark(worker);
+		}
+	}
+
+	private boolean mustDrop(ILoggingEvent event) {
+		switch (overflowPolicy) {
+		case DROP:
+			return true;
+		case DROP_BELOW_WARN:
+			if (!event.getLevel().isGreaterOrEqual(Level.WARN)) {
+				return true;
+			}
+			break;
+		default:
+			break;
+		}
+		// an attached appender logging from the worker would wait for itself
+		return Thread.currentThread() == worker || !running;
+	}
+
+	private final class Worker implements Runnable {
+		private final ILoggingEvent[] batch = new ILoggingEvent[batchSize];
+
+		@Override
+		public void run() {
+			while (true) {
+				int count = take();
+				if (count > 0) {
+					for (int i = 0; i < count; i++) {
+						appenders.appendLoopOnAppenders(batch[i]);
+						batch[i] = null;
+					}
+					continue;
+				}
+				if (head.get() != tail.get()) {
+					// a slot is claimed but its event not stored yet
+					Thread.yield();
+					continue;
+				}
+				if (!running) {
+					// nobody is admitted any more once the count reads 0, recheck what the last ones stored
+					if (admitted.get() == 0 && head.get() == tail.get()) {
+						return;
+					}
+					Thread.yield();
+					continue;
+				}
+				sleeping = true;
+				if (head.get() == tail.get() && running) {
+					LockSupport.parkNanos(IDLE_PARK_NANOS);
+				}
+				sleeping = false;
+			}
+		}
+
+		/**
+		 * Moves up to one batch off the ring and frees the slots before the slow appenders run.
+		 */
+		private int take() {
+			long sequence = head.get();
+			int count = 0;
+			while (count < batch.length) {
+				int index = (int) sequence & mask;
+				ILoggingEvent event = ring.get(index);
+				if (event == null) {
+					break;
+				}
+				ring.lazySet(index, null);
+				batch[count++] = event;
+				sequence++;
+			}
+			if (count > 0) {
+				head.lazySet(sequence);
+			}
+			return count;
+		}
+	}
+
+	@Override
+	public void addAppender(Appender<ILoggingEvent> newAppender) {
+		appenders.addAppender(newAppender);
+	}
+
+	@Override
+	public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+		return appenders.iteratorForAppenders();
+	}
+
+	@Override
+	public Appender<ILoggingEvent> getAppender(String name) {
+		return appenders.getAppender(name);
+	}
+
+	@Override
+	public boolean isAttached(Appender<ILoggingEvent> appender) {
+		return appenders.isAttached(appender);
+	}
+
+	@Override
+	public void detachAndStopAllAppenders() {
+		appenders.detachAndStopAllAppenders();
+	}
+
+	@Override
+	public boolean detachAppender(Appender<ILoggingEvent> appender) {
+		return appenders.detachAppender(appender);
+	}
+
+	@Override
+	public boolean detachAppender(String name) {
+		return appenders.detachAppender(name);
+	}
+}
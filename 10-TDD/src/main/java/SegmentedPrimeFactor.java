@@ -0,0 +1,159 @@
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Streams the factorization of every value of a range, one cache-sized segment at a time.
+ * <p>
+ * Only the primes up to sqrt(to) are kept for the whole run. Each segment gets a segmented sieve pass:
+ * every base prime divides out of each of its multiples in the segment, and whatever cofactor is left
+ * above 1 afterwards is the one prime factor larger than sqrt(to). Memory stays at
+ * O(sqrt(to) + segment size) however long the range is, which a full smallest-prime-factor table up to
+ * Integer.MAX_VALUE could not offer.
+ */
+public class SegmentedPrimeFactor {
+
+	/** 32K ints of cofactors plus the factor entries of one segment stay within a typical L2 cache. */
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 15;
+
+	/**
+	 * Receives each value's factorization in ascending order of value. The instance passed in is reused for
+	 * the next value, so copy whatever has to outlive the call.
+	 */
+	public interface FactorizationConsumer {
+		void accept(IntFactorization factorization);
+	}
+
+	private final int segmentSize;
+
+	public SegmentedPrimeFactor() {
+		this(DEFAULT_SEGMENT_SIZE);
+	}
+
+	private SegmentedPrimeFactor(int segmentSize) {
+		this.segmentSize = segmentSize;
+	}
+
+	public static SegmentedPrimeFactor withSegmentSize(int segmentSize) {
+		if (segmentSize < 1) {
+			throw new IllegalArgumentException("segmentSize must be positive: " + segmentSize);
+		}
+		return new SegmentedPrimeFactor(segmentSize);
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void matchesPrimeFactor() {
+		final PrimeFactor primeFactor = new PrimeFactor();
+		final IntFactorization expected = new IntFactorization();
+		final int[] next = new int[1];
+		FactorizationConsumer check = new FactorizationConsumer() {
+			@Override
+			public void accept(IntFactorization factorization) {
+				Assert.assertEquals(next[0]++, factorization.value());
+				Assert.assertEquals(primeFactor.factorize(factorization.value(), expected), factorization);
+			}
+		};
+
+		next[0] = 0;
+		withSegmentSize(1000).forEach(0, 200000, check);
+		Assert.assertEquals(200000, next[0]);
+
+		next[0] = Integer.MAX_VALUE - 5000;
+		new SegmentedPrimeFactor().forEach(Integer.MAX_VALUE - 5000, Integer.MAX_VALUE + 1L, check);
+		Assert.assertEquals(Integer.MIN_VALUE, next[0]);
+	}
+
+	/**
+	 * Factors from, from + 1, ..., to - 1 in order.
+	 * @param to exclusive, at most Integer.MAX_VALUE + 1 so that the whole int range can be streamed
+	 */
+	public void forEach(int from, long to, FactorizationConsumer consumer) {
+		if (from < 0 || to < from || to > Integer.MAX_VALUE + 1L) {
+			throw new IllegalArgumentException("invalid range [" + from + ", " + to + ")");
+		}
+		int[] basePrimes = primesUpTo((int) Math.sqrt(to));
+		int[] cofactors = new int[segmentSize];
+		int[] heads = new int[segmentSize];
+		// per value, a linked list of (prime, exponent) entries, most recently found prime first
+		int[] primes = new int[segmentSize * 4];
+		int[] exponents = new int[primes.length];
+		int[] nexts = new int[primes.length];
+		int[] stack = new int[IntFactorization.MAX_DISTINCT_PRIMES];
+		IntFactorization factorization = new IntFactorization();
+
+		for (long lo = from; lo < to; lo += segmentSize) {
+			int length = (int) Math.min(segmentSize, to - lo);
+			for (int i = 0; i < length; i++) {
+				cofactors[i] = (int) (lo + i);
+			}
+			Arrays.fill(heads, 0, length, -1);
+			int entries = 0;
+
+			for (int p : basePrimes) {
+				long first = Math.max((long) p, (lo + p - 1) / p * p);
+				for (long m = first; m < lo + length; m += p) {
+					int i = (int) (m - lo);
+					int cofactor = cofactors[i];
+					int exponent = 0;
+					do {
+						cofactor /= p;
+						exponent++;
+					} while (cofactor % p == 0);
+					cofactors[i] = cofactor;
+					if (entries == primes.length) {
+						primes = Arrays.copyOf(primes, entries * 2);
+						exponents = Arrays.copyOf(exponents, entries * 2);
+						nexts = Arrays.copyOf(nexts, entries * 2);
+					}
+					primes[entries] = p;
+					exponents[entries] = exponent;
+					nexts[entries] = heads[i];
+					heads[i] = entries++;
+				}
+			}
+
+			for (int i = 0; i < length; i++) {
+				factorization.reset((int) (lo + i));
+				int depth = 0;
+				for (int e = heads[i]; e >= 0; e = nexts[e]) {
+					stack[depth++] = e;
+				}
+				while (depth > 0) {
+					int e = stack[--depth];
+					factorization.add(primes[e], exponents[e]);
+				}
+				if (cofactors[i] > 1) {
+					factorization.add(cofactors[i], 1);
+				}
+				consumer.accept(factorization);
+			}
+		}
+	}
+
+	private static int[] primesUpTo(int n) {
+		if (n < 2) {
+			return new int[0];
+		}
+		boolean[] composite = new boolean[n + 1];
+		int count = 0;
+		for (int i = 2; i <= n; i++) {
+			if (composite[i]) {
+				continue;
+			}
+			count++;
+			for (long j = (long) i * i; j <= n; j += i) {
+				composite[(int) j] = true;
+			}
+		}
+		int[] primes = new int[count];
+		for (int i = 2, k = 0; i <= n; i++) {
+			if (!composite[i]) {
+				primes[k++] = i;
+			}
+		}
+		return primes;
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Smallest-prime-factor table for every value in [2, limit].
+ * <p>
+ * The table is built on first use, so creating a sieve is cheap until somebody
+ * actually factors a number. Once built, factoring any value up to the limit is
+ * a chain of table lookups and divisions, i.e. O(log n).
+ */
+public class SmallestPrimeFactorSieve {
+
+	public static final int DEFAULT_LIMIT = 1 << 20;
+
+	private final int limit;
+	private volatile int[] smallestPrimeFactors;
+
+	public SmallestPrimeFactorSieve(int limit) {
+		if (limit < 2 || limit == Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("limit must be between 2 and " + (Integer.MAX_VALUE - 1) + ": " + limit);
+		}
+		this.limit = limit;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @param n value in [2, limit]
+	 * @return the smallest prime that divides n
+	 */
+	public int smallestPrimeFactor(int n) {
+		return table()[n];
+	}
+
+	/**
+	 * @return true if n is in [2, limit] and prime
+	 */
+	public boolean isPrime(int n) {
+		return n >= 2 && n <= limit && table()[n] == n;
+	}
+
+	private int[] table() {
+		int[] table = smallestPrimeFactors;
+		if (table == null) {
+			synchronized (this) {
+				table = smallestPrimeFactors;
+				if (table == null) {
+					table = build(limit);
+					smallestPrimeFactors = table;
+				}
+			}
+		}
+		return table;
+	}
+
+	private static int[] build(int limit) {
+		int[] table = new int[limit + 1];
+		for (int i = 2; i <= limit; i++) {
+			if (table[i] != 0) {
+				continue;
+			}
+			table[i] = i;
+			if (i > limit / i) {
+				continue;
+			}
+			// j += i would overflow for limits close to Integer.MAX_VALUE, so stop one step early
+			for (int j = i * i; ; j += i) {
+				if (table[j] == 0) {
+					table[j] = i;
+				}
+				if (j > limit - i) {
+					break;
+				}
+			}
+		}
+		return table;
+	}
+}
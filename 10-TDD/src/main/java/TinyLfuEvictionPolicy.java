@@ -0,0 +1,135 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * W-TinyLFU style policy: new keys enter a small LRU window, and a key falling out of the window only
+ * displaces the eldest key of the main LRU region if it has been requested more often recently.
+ * <p>
+ * Request frequencies come from a count-min sketch of 4-bit counters that is halved periodically, so
+ * the policy remembers keys it no longer caches and forgets old popularity. A one-off scan therefore
+ * cycles through the window without flushing the hot keys out of the main region.
+ */
+public class TinyLfuEvictionPolicy implements EvictionPolicy {
+
+	private static final int WINDOW_PERCENT = 1;
+
+	private final int windowSize;
+	private final int mainSize;
+	private final LinkedHashMap<Integer, Boolean> window = new LinkedHashMap<Integer, Boolean>(16, 0.75f, true);
+	private final LinkedHashMap<Integer, Boolean> main = new LinkedHashMap<Integer, Boolean>(16, 0.75f, true);
+	private final FrequencySketch sketch;
+
+	public TinyLfuEvictionPolicy(int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+		}
+		this.windowSize = Math.max(1, maximumSize * WINDOW_PERCENT / 100);
+		this.mainSize = maximumSize - windowSize;
+		this.sketch = new FrequencySketch(maximumSize);
+	}
+
+	@Override
+	public void recordAccess(int key) {
+		sketch.increment(key);
+		if (window.get(key) == null) {
+			main.get(key);
+		}
+	}
+
+	@Override
+	public void admit(int key, IntConsumer evict) {
+		sketch.increment(key);
+		window.put(key, Boolean.TRUE);
+		if (window.size() <= windowSize) {
+			return;
+		}
+		int candidate = removeEldest(window);
+		if (main.size() < mainSize) {
+			main.put(candidate, Boolean.TRUE);
+		} else if (mainSize > 0 && sketch.frequency(candidate) > sketch.frequency(eldest(main))) {
+			evict.accept(removeEldest(main));
+			main.put(candidate, Boolean.TRUE);
+		} else {
+			evict.accept(candidate);
+		}
+	}
+
+	private static int eldest(LinkedHashMap<Integer, Boolean> region) {
+		return region.keySet().iterator().next();
+	}
+
+	private static int removeEldest(LinkedHashMap<Integer, Boolean> region) {
+		Iterator<Integer> eldest = region.keySet().iterator();
+		int key = eldest.next();
+		eldest.remove();
+		return key;
+	}
+
+	/**
+	 * Count-min sketch with four rows of saturating 4-bit counters, packed sixteen to a long.
+	 */
+	static final class FrequencySketch {
+		private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+		private static final long RESET_MASK = 0x7777777777777777L;
+
+		private final long[] table;
+		private final int mask;
+		private final int sampleSize;
+		private int additions;
+
+		FrequencySketch(int maximumSize) {
+			int counters = Integer.highestOneBit(Math.max(16, maximumSize - 1) << 1);
+			this.table = new long[counters / 16 * 4];
+			this.mask = counters - 1;
+			this.sampleSize = 10 * counters;
+		}
+
+		int frequency(int key) {
+			int frequency = 15;
+			for (int row = 0; row < 4; row++) {
+				frequency = Math.min(frequency, counter(row, index(key, row)));
+			}
+			return frequency;
+		}
+
+		void increment(int key) {
+			boolean added = false;
+			for (int row = 0; row < 4; row++) {
+				int index = index(key, row);
+				if (counter(row, index) < 15) {
+					table[slot(row, index)] += 1L << shift(index);
+					added = true;
+				}
+			}
+			if (added && ++additions == sampleSize) {
+				reset();
+			}
+		}
+
+		// halve every counter so popularity fades over time
+		private void reset() {
+			for (int i = 0; i < table.length; i++) {
+				table[i] = (table[i] >>> 1) & RESET_MASK;
+			}
+			additions /= 2;
+		}
+
+		private int counter(int row, int index) {
+			return (int) (table[slot(row, index)] >>> shift(index)) & 0xF;
+		}
+
+		private int index(int key, int row) {
+			long hash = (key + SEEDS[row]) * SEEDS[row];
+			return (int) (hash ^ (hash >>> 32)) & mask;
+		}
+
+		private int slot(int row, int index) {
+			return row * (table.length / 4) + (index >>> 4);
+		}
+
+		private static int shift(int index) {
+			return (index & 15) << 2;
+		}
+	}
+}
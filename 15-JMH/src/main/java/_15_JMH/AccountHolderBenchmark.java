@@ -0,0 +1,44 @@
+package _15_JMH;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import _06_PowerMock_Static.AccountHolder;
+import _06_PowerMock_Static.Statement;
+
+/**
+ * AccountHolder.getMiniStatement as shipped.
+ * <p>
+ * The static AccountManager it calls is a stub meant to be replaced by PowerMock and throws
+ * UnsupportedOperationException, so outside a test this measures the call plus the throw. The number is
+ * still the baseline to compare against once a real AccountManager exists.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountHolderBenchmark {
+
+	private final AccountHolder accountHolder = new AccountHolder("bimal", "XYZ123");
+
+	@Benchmark
+	public Object getMiniStatement() {
+		try {
+			Statement statement = accountHolder.getMiniStatement();
+			return statement;
+		} catch (UnsupportedOperationException e) {
+			return e;
+		}
+	}
+}
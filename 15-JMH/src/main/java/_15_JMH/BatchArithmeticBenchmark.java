@@ -0,0 +1,122 @@
+package _15_JMH;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import _10_Mock.CalculatorApplication;
+import _10_Mock.PrimitiveArithmetic;
+
+/**
+ * Whole-column arithmetic: one op is one pass over {@code size} elements, so elements per second is the score
+ * times size. The per-element loops through the Object API and the primitive API are the baselines.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchArithmeticBenchmark {
+
+	@Param({"1024", "65536"})
+	private int size;
+
+	private CalculatorApplication calculator;
+	private long[] longs1;
+	private long[] longs2;
+	private long[] longResult;
+	private double[] doubles1;
+	private double[] doubles2;
+	private double[] doubleResult;
+	private DoubleBuffer direct1;
+	private DoubleBuffer direct2;
+	private DoubleBuffer directResult;
+
+	@Setup
+	public void setup() {
+		calculator = new CalculatorApplication(PrimitiveArithmetic.INSTANCE, PrimitiveArithmetic.INSTANCE);
+		Random random = new Random(42);
+		longs1 = new long[size];
+		longs2 = new long[size];
+		longResult = new long[size];
+		doubles1 = new double[size];
+		doubles2 = new double[size];
+		doubleResult = new double[size];
+		direct1 = directBuffer(size);
+		direct2 = directBuffer(size);
+		directResult = directBuffer(size);
+		for (int i = 0; i < size; i++) {
+			longs1[i] = random.nextInt();
+			longs2[i] = random.nextInt() | 1;
+			doubles1[i] = random.nextDouble();
+			doubles2[i] = random.nextDouble() + 1;
+			direct1.put(i, doubles1[i]);
+			direct2.put(i, doubles2[i]);
+		}
+	}
+
+	private static DoubleBuffer directBuffer(int size) {
+		return ByteBuffer.allocateDirect(size * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+	}
+
+	@Benchmark
+	public long[] addLongs() {
+		return calculator.addAll(longs1, longs2, longResult);
+	}
+
+	@Benchmark
+	public long[] multiplyLongs() {
+		return calculator.multiplyAll(longs1, longs2, longResult);
+	}
+
+	@Benchmark
+	public long[] divideLongs() {
+		return calculator.divideAll(longs1, longs2, longResult);
+	}
+
+	@Benchmark
+	public double[] addDoubles() {
+		return calculator.addAll(doubles1, doubles2, doubleResult);
+	}
+
+	@Benchmark
+	public double[] multiplyDoubles() {
+		return calculator.multiplyAll(doubles1, doubles2, doubleResult);
+	}
+
+	@Benchmark
+	public DoubleBuffer addDirectBuffers() {
+		return calculator.addAll(direct1, direct2, directResult);
+	}
+
+	@Benchmark
+	public long[] addLongsOneByOne() {
+		for (int i = 0; i < size; i++) {
+			longResult[i] = calculator.addLong(longs1[i], longs2[i]);
+		}
+		return longResult;
+	}
+
+	@Benchmark
+	public long[] addLongsBoxed() {
+		for (int i = 0; i < size; i++) {
+			longResult[i] = (Long) calculator.add(longs1[i], longs2[i]);
+		}
+		return longResult;
+	}
+}
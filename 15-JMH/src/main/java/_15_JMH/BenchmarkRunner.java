@@ -0,0 +1,34 @@
+package _15_JMH;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark of this module (or those matching the regexps given on the command line) with the
+ * GC profiler attached, so each result carries its allocation rate next to its throughput, and writes the
+ * results as JSON to target/jmh-result.json for comparison between builds.
+ * <p>
+ * Any standard JMH option given on the command line wins over these defaults, e.g.
+ * <pre>java -jar target/benchmarks.jar PrimeFactor -rff before.json</pre>
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class);
+		// values set on the builder would shadow the command line, so only fill in what was not given there
+		if (!commandLine.getResultFormat().hasValue()) {
+			builder.resultFormat(ResultFormatType.JSON);
+		}
+		if (!commandLine.getResult().hasValue()) {
+			builder.result("target/jmh-result.json");
+		}
+		new Runner(builder.build()).run();
+	}
+}
@@ -0,0 +1,84 @@
+package _15_JMH;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import _10_Mock.Adder;
+import _10_Mock.CalculatorApplication;
+import _10_Mock.Divisor;
+import _10_Mock.Multiplier;
+import _10_Mock.Subtracter;
+
+/**
+ * CalculatorApplication's Object-typed arithmetic, boxing included, with plain Long operations plugged in.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CalculatorApplicationBenchmark {
+
+	private CalculatorApplication calculator;
+	private long n1;
+	private long n2;
+
+	@Setup
+	public void setup() {
+		calculator = new CalculatorApplication(new Adder() {
+			@Override
+			public Object add(Object n1, Object n2) {
+				return (Long) n1 + (Long) n2;
+			}
+		}, new Subtracter() {
+			@Override
+			public Object subtract(Object n1, Object n2) {
+				return (Long) n1 - (Long) n2;
+			}
+		}, new Multiplier() {
+			@Override
+			public Object multiply(Object n1, Object n2) {
+				return (Long) n1 * (Long) n2;
+			}
+		}, new Divisor() {
+			@Override
+			public Object divide(Object n1, Object n2) throws ArithmeticException {
+				return (Long) n1 / (Long) n2;
+			}
+		});
+		// outside the Long cache, so boxing really allocates
+		n1 = 1000003;
+		n2 = 997;
+	}
+
+	@Benchmark
+	public Object add() {
+		return calculator.add(n1, n2);
+	}
+
+	@Benchmark
+	public Object subtract() {
+		return calculator.subtract(n1, n2);
+	}
+
+	@Benchmark
+	public Object multiply() {
+		return calculator.multiply(n1, n2);
+	}
+
+	@Benchmark
+	public Object divide() {
+		return calculator.divide(n1, n2);
+	}
+}
@@ -0,0 +1,77 @@
+package _15_JMH;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import _10_Mock.BatchArithmetic;
+import _10_Mock.CalculatorApplication;
+import _10_Mock.PrimitiveArithmetic;
+
+/**
+ * Long division of 65536 rows with a share of zero divisors: the error bitmap against catching the
+ * ArithmeticException of each failing row.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DivideAllBenchmark {
+
+	private static final int ROWS = 65536;
+
+	@Param({"0", "1", "50"})
+	private int zeroPercent;
+
+	private CalculatorApplication calculator;
+	private long[] n1;
+	private long[] n2;
+	private long[] result;
+	private long[] errors;
+
+	@Setup
+	public void setup() {
+		calculator = new CalculatorApplication(PrimitiveArithmetic.INSTANCE, PrimitiveArithmetic.INSTANCE);
+		Random random = new Random(42);
+		n1 = new long[ROWS];
+		n2 = new long[ROWS];
+		for (int i = 0; i < ROWS; i++) {
+			n1[i] = random.nextLong();
+			n2[i] = random.nextInt(100) < zeroPercent ? 0 : random.nextInt(1000) + 1;
+		}
+		result = new long[ROWS];
+		errors = new long[BatchArithmetic.errorWords(ROWS)];
+	}
+
+	@Benchmark
+	public int errorBitmap() {
+		return calculator.divideAll(n1, n2, result, errors);
+	}
+
+	@Benchmark
+	public int catchPerRow() {
+		int failed = 0;
+		for (int i = 0; i < ROWS; i++) {
+			try {
+				result[i] = calculator.divideLong(n1[i], n2[i]);
+			} catch (ArithmeticException e) {
+				result[i] = 0;
+				failed++;
+			}
+		}
+		return failed;
+	}
+}
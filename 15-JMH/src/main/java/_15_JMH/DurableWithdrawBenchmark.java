@@ -0,0 +1,78 @@
+package _15_JMH;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import _03_Verify.DurableAccountManager;
+
+/**
+ * Durable withdrawals from eight threads, each on its own account. Every call waits for its fsync, so the
+ * throughput above one thread's comes from the write-ahead log's group commit; syncs per operation are printed
+ * at teardown.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class DurableWithdrawBenchmark {
+
+	private Path directory;
+	private DurableAccountManager accountManager;
+
+	@State(Scope.Thread)
+	public static class ThreadAccount {
+		int id;
+
+		@Setup
+		public void setup(DurableWithdrawBenchmark benchmark) {
+			id = benchmark.accountManager.open(Long.MAX_VALUE);
+		}
+	}
+
+	@Setup
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("ledger");
+		accountManager = new DurableAccountManager(directory);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		long syncs = accountManager.getSyncCount();
+		long operations = 0;
+		for (int id = 0; id < accountManager.size(); id++) {
+			operations += Long.MAX_VALUE - accountManager.getBalance(id);
+		}
+		accountManager.close();
+		System.out.println("syncs: " + syncs + ", operations: " + operations);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	@Benchmark
+	public long tryWithdraw(ThreadAccount account) {
+		return accountManager.tryWithdraw(account.id, 1);
+	}
+}
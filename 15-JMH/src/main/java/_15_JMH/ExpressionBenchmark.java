@@ -0,0 +1,79 @@
+package _15_JMH;
+
+import static _10_Mock.Expression.column;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import _10_Mock.CalculatorApplication;
+import _10_Mock.CompiledExpression;
+import _10_Mock.PrimitiveArithmetic;
+
+/**
+ * (a + b) * c / d over 65536 rows: compiled into one evaluator, as three batch passes through temporaries,
+ * and one Object-typed call per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpressionBenchmark {
+
+	private static final int ROWS = 65536;
+
+	private CalculatorApplication calculator;
+	private CompiledExpression compiled;
+	private double[][] columns;
+	private double[] temporary;
+	private double[] result;
+
+	@Setup
+	public void setup() {
+		calculator = new CalculatorApplication(PrimitiveArithmetic.INSTANCE, PrimitiveArithmetic.INSTANCE);
+		compiled = calculator.compile(column(0).add(column(1)).multiply(column(2)).divide(column(3)));
+		Random random = new Random(42);
+		columns = new double[4][ROWS];
+		for (double[] column : columns) {
+			for (int row = 0; row < ROWS; row++) {
+				column[row] = random.nextDouble() + 1;
+			}
+		}
+		temporary = new double[ROWS];
+		result = new double[ROWS];
+	}
+
+	@Benchmark
+	public double[] compiled() {
+		return compiled.evaluate(columns, result);
+	}
+
+	@Benchmark
+	public double[] batchPasses() {
+		calculator.addAll(columns[0], columns[1], temporary);
+		calculator.multiplyAll(temporary, columns[2], temporary);
+		return calculator.divideAll(temporary, columns[3], result);
+	}
+
+	@Benchmark
+	public double[] boxedPerOperation() {
+		for (int row = 0; row < ROWS; row++) {
+			Object sum = calculator.add(columns[0][row], columns[1][row]);
+			Object product = calculator.multiply(sum, columns[2][row]);
+			result[row] = (Double) calculator.divide(product, columns[3][row]);
+		}
+		return result;
+	}
+}
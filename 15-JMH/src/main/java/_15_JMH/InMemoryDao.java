@@ -0,0 +1,35 @@
+package _15_JMH;
+
+import _01_HelloWorld.IDao;
+import _01_HelloWorld.InvalidQuestionException;
+
+/**
+ * IDao answering from constants, so ServiceImpl is measured without any DAO latency.
+ */
+class InMemoryDao implements IDao {
+
+	@Override
+	public String greet() {
+		return HELLO_WORLD;
+	}
+
+	@Override
+	public int getPrice(String tutorial) {
+		return TOPIC_MOCKITO.equals(tutorial) ? 99 : 0;
+	}
+
+	@Override
+	public String question(String question) throws InvalidQuestionException {
+		if (ANY_NEW_TOPICS.equals(question)) {
+			return YES_NEW_TOPICS_AVAILABLE;
+		}
+		if (WHAT_IS_TODAYS_TOPIC.equals(question)) {
+			return TOPIC_MOCKITO;
+		}
+		throw new InvalidQuestionException();
+	}
+
+	@Override
+	public void bye() {
+	}
+}
@@ -0,0 +1,118 @@
+package _15_JMH;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PrimeFactor.getPrimeFactors(int) over three input shapes: smooth numbers (many small factors), primes
+ * above the sieve limit (worst case for trial division) and semiprimes of two primes near sqrt(2^31).
+ * <p>
+ * PrimeFactor lives in the unnamed package of 10-TDD, which named packages cannot import, so it is
+ * reached through method handles held in static finals. The JIT treats those as constants and inlines
+ * through them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrimeFactorBenchmark {
+
+	private static final MethodHandle NEW_PRIME_FACTOR;
+	private static final MethodHandle GET_PRIME_FACTORS;
+
+	static {
+		try {
+			Class<?> primeFactor = Class.forName("PrimeFactor");
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			NEW_PRIME_FACTOR = lookup.findConstructor(primeFactor, MethodType.methodType(void.class))
+					.asType(MethodType.methodType(Object.class));
+			GET_PRIME_FACTORS = lookup.findVirtual(primeFactor, "getPrimeFactors", MethodType.methodType(List.class, int.class))
+					.asType(MethodType.methodType(List.class, Object.class, int.class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private static final int VALUES = 1024;
+
+	@Param({ "smooth", "prime", "semiprime" })
+	public String kind;
+
+	private Object primeFactor;
+	private int[] values;
+	private int next;
+
+	@Setup
+	public void setup() throws Throwable {
+		primeFactor = NEW_PRIME_FACTOR.invokeExact();
+		values = new int[VALUES];
+		if ("smooth".equals(kind)) {
+			for (int i = 0; i < VALUES; i++) {
+				values[i] = smooth(i);
+			}
+		} else if ("prime".equals(kind)) {
+			for (int i = 0, candidate = Integer.MAX_VALUE; i < VALUES; candidate -= 2) {
+				if (isPrime(candidate)) {
+					values[i++] = candidate;
+				}
+			}
+		} else {
+			int[] primes = new int[64];
+			for (int i = 0, candidate = 46337; i < primes.length; candidate -= 2) {
+				if (isPrime(candidate)) {
+					primes[i++] = candidate;
+				}
+			}
+			for (int i = 0; i < VALUES; i++) {
+				values[i] = primes[i % 64] * primes[(i / 64 + i) % 64];
+			}
+		}
+	}
+
+	@Benchmark
+	public List<?> getPrimeFactors() throws Throwable {
+		int value = values[next++ & (VALUES - 1)];
+		return (List<?>) GET_PRIME_FACTORS.invokeExact(primeFactor, value);
+	}
+
+	// 2^a * 3^b * 5^c * 7^d, all below 2^31
+	private static int smooth(int seed) {
+		long value = 1L << (seed % 11);
+		for (int i = 0; i < (seed / 11) % 7; i++) {
+			value *= 3;
+		}
+		for (int i = 0; i < (seed / 77) % 5; i++) {
+			value *= 5;
+		}
+		for (int i = 0; i < (seed / 385) % 4; i++) {
+			value *= 7;
+		}
+		return (int) value;
+	}
+
+	private static boolean isPrime(int n) {
+		for (int d = 3; d <= n / d; d += 2) {
+			if (n % d == 0) {
+				return false;
+			}
+		}
+		return (n & 1) != 0;
+	}
+}
@@ -0,0 +1,47 @@
+package _15_JMH;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import _01_HelloWorld.DAONotAvailableException;
+import _01_HelloWorld.IDao;
+import _01_HelloWorld.InvalidQuestionException;
+import _01_HelloWorld.ServiceImpl;
+
+/**
+ * ServiceImpl.question down the "new topic available" path against an in-memory IDao.
+ * <p>
+ * ServiceImpl reports through {@link common.Trace}, which is left at its default {@link common.TraceSink#NONE},
+ * so tracing adds one volatile read per event. Pass {@code -jvmArgsAppend -DtraceDisabled=true} to measure
+ * without it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceImplBenchmark {
+
+	private ServiceImpl service;
+
+	@Setup
+	public void setup() {
+		service = new ServiceImpl(new InMemoryDao());
+	}
+
+	@Benchmark
+	public String question() throws InvalidQuestionException, DAONotAvailableException {
+		return service.question(IDao.ANY_NEW_TOPICS);
+	}
+}
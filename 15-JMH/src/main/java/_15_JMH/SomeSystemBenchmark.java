@@ -0,0 +1,80 @@
+package _15_JMH;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import _05_PowerMock.Service;
+import _05_PowerMock.ServiceListener;
+import _05_PowerMock.SomeSystem;
+
+/**
+ * SomeSystem.start with N services, half of which fail to start.
+ * <p>
+ * start() appends one event per service and never forgets them, so the events are cleared after each
+ * call to keep the list from growing for the whole run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SomeSystemBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int services;
+
+	private SomeSystem system;
+	private int successes;
+	private int failures;
+
+	@Setup
+	public void setup() {
+		system = new SomeSystem();
+		for (int i = 0; i < services; i++) {
+			final String name = "service" + i;
+			final int returnCode = i % 2;
+			system.add(new Service() {
+				@Override
+				public String getName() {
+					return name;
+				}
+
+				@Override
+				public int start() {
+					return returnCode;
+				}
+			});
+		}
+		system.setServiceListener(new ServiceListener() {
+			@Override
+			public void onSuccess(Service service) {
+				successes++;
+			}
+
+			@Override
+			public void onFailure(Service service) {
+				failures++;
+			}
+		});
+	}
+
+	@Benchmark
+	public int start() {
+		system.start();
+		int events = system.getEvents().size();
+		system.getEvents().clear();
+		return events;
+	}
+}
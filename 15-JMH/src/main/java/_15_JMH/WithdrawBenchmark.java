@@ -0,0 +1,80 @@
+package _15_JMH;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import _03_Verify.AccountManager;
+import _03_Verify.ConcurrentAccountManager;
+import _03_Verify.Customer;
+import _03_Verify.DenseAccountManager;
+
+/**
+ * Customer.tryWithdraw from four threads, all on one account or each thread on an account of its own, over the
+ * map-based ConcurrentAccountManager and the id-based DenseAccountManager.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class WithdrawBenchmark {
+
+	@Param({"true", "false"})
+	private boolean shared;
+
+	@Param({"concurrent", "dense"})
+	private String manager;
+
+	private AccountManager accountManager;
+	private Customer sharedCustomer;
+
+	@State(Scope.Thread)
+	public static class ThreadCustomer {
+		Customer customer;
+
+		@Setup
+		public void setup(WithdrawBenchmark benchmark) {
+			if (benchmark.shared) {
+				customer = benchmark.sharedCustomer;
+			} else {
+				customer = benchmark.newCustomer();
+			}
+		}
+	}
+
+	@Setup
+	public void setup() {
+		accountManager = "dense".equals(manager) ? new DenseAccountManager() : new ConcurrentAccountManager();
+		sharedCustomer = newCustomer();
+	}
+
+	Customer newCustomer() {
+		Customer customer = new Customer();
+		customer.setAccountManager(accountManager);
+		if (accountManager instanceof DenseAccountManager) {
+			((DenseAccountManager) accountManager).open(customer, Long.MAX_VALUE);
+		} else {
+			((ConcurrentAccountManager) accountManager).open(customer, Long.MAX_VALUE);
+		}
+		return customer;
+	}
+
+	@Benchmark
+	public long tryWithdraw(ThreadCustomer thread) {
+		return thread.customer.tryWithdraw(1);
+	}
+}